@@ -0,0 +1,118 @@
+package jump61;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Benchmarks of the Board operations on which searches spend their
+ *  time, on the positions given by Positions.  Since a move can only be
+ *  made once, each benchmark of addSpot also undoes its move; undoCascade
+ *  times the undo of a long cascade by itself.
+ *  @author Evelyn Vo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BoardBench {
+
+    /** Number of rows and of columns of the board. */
+    @Param({ "2", "6", "10" })
+    public int size;
+
+    /** Set up the position and the moves to make from it. */
+    @Setup(Level.Trial)
+    public void setUp() {
+        _board = Positions.board(size);
+        _player = _board.whoseMove();
+        _quiet = Positions.quietMove(_board);
+        _cascade = Positions.cascadeMove(_board);
+    }
+
+    /** Add a spot that causes no jumps, and undo it. */
+    @Benchmark
+    public int quietMoveAndUndo() {
+        _board.addSpot(_player, _quiet);
+        int result = _board.numPieces();
+        _board.undo();
+        return result;
+    }
+
+    /** Add the spot that causes the longest cascade, and undo it. */
+    @Benchmark
+    public int cascadeAndUndo() {
+        _board.addSpot(_player, _cascade);
+        int result = _board.numPieces();
+        _board.undo();
+        return result;
+    }
+
+    /** Undo the move that causes the longest cascade, made on the board
+     *  of CASCADED. */
+    @Benchmark
+    public int undoCascade(Cascaded cascaded) {
+        cascaded._board.undo();
+        return cascaded._board.numPieces();
+    }
+
+    /** Copy the board. */
+    @Benchmark
+    public Board copy() {
+        return new Board(_board);
+    }
+
+    /** Copy the board and make a quiet move on the copy, which is when
+     *  the copy stops sharing the original's storage. */
+    @Benchmark
+    public Board copyAndMove() {
+        Board copy = new Board(_board);
+        copy.addSpot(_player, _quiet);
+        return copy;
+    }
+
+    /** Find the side to move and the number of spots. */
+    @Benchmark
+    public void whoseMoveAndNumPieces(Blackhole bh) {
+        bh.consume(_board.whoseMove());
+        bh.consume(_board.numPieces());
+    }
+
+    /** Compute the values used by static evaluation. */
+    @Benchmark
+    public int[][] heuristicValues() {
+        return _board.heuristicValues();
+    }
+
+    /** The board, holding the position once setUp is done. */
+    private Board _board;
+    /** The side to move in the position. */
+    private Side _player;
+    /** A move from the position causing no jumps, and one causing the
+     *  longest cascade. */
+    private int _quiet, _cascade;
+
+    /** A copy of the board on which the cascade move has been made before
+     *  each call of undoCascade. */
+    @State(Scope.Thread)
+    public static class Cascaded {
+
+        /** Copy the position of BENCH, and make its cascade move. */
+        @Setup(Level.Invocation)
+        public void setUp(BoardBench bench) {
+            _board = new Board(bench._board);
+            _board.addSpot(bench._player, bench._cascade);
+        }
+
+        /** The copy. */
+        private Board _board;
+    }
+
+}
@@ -0,0 +1,93 @@
+package jump61;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/** The fixed positions on which the benchmarks run.  Each is reached by
+ *  random legal moves from an empty board, chosen with the seed of the
+ *  self-play tests (testing/0a-playlocal*-1.in), and never ending the
+ *  game, so that the same arguments always give the same position.
+ *  @author Evelyn Vo
+ */
+class Positions {
+
+    /** Return the moves (square numbers) leading to the position on an
+     *  N x N board: N * N of them, or fewer if every move would end
+     *  the game. */
+    static int[] moves(int N) {
+        Random random = new Random(SEED);
+        Board board = new Board(N);
+        int[] legal = new int[N * N];
+        int[] moves = new int[N * N];
+        int numMoves;
+        for (numMoves = 0; numMoves < moves.length; numMoves += 1) {
+            Side player = board.whoseMove();
+            int numLegal = board.legalMoves(player, legal);
+            int k = 0, move = -1;
+            for (int start = random.nextInt(numLegal); k < numLegal;
+                 k += 1) {
+                move = legal[(start + k) % numLegal];
+                board.addSpot(player, move);
+                if (board.getWinner() == null) {
+                    break;
+                }
+                board.undo();
+            }
+            if (k == numLegal) {
+                break;
+            }
+            moves[numMoves] = move;
+        }
+        return Arrays.copyOf(moves, numMoves);
+    }
+
+    /** Return a new N x N board holding the position. */
+    static Board board(int N) {
+        Board board = new Board(N);
+        for (int move : moves(N)) {
+            board.addSpot(board.whoseMove(), move);
+        }
+        return board;
+    }
+
+    /** Return the first legal move for the side to move on BOARD that
+     *  causes no jumps and does not end the game, or the first legal move
+     *  if there is none. */
+    static int quietMove(Board board) {
+        Side player = board.whoseMove();
+        int[] legal = new int[board.size() * board.size()];
+        int numLegal = board.legalMoves(player, legal);
+        for (int k = 0; k < numLegal; k += 1) {
+            Board work = new Board(board);
+            work.addSpot(player, legal[k]);
+            boolean quiet = work.avalancheSize() == 0
+                && work.getWinner() == null;
+            if (quiet) {
+                return legal[k];
+            }
+        }
+        return legal[0];
+    }
+
+    /** Return the first of the legal moves for the side to move on BOARD
+     *  that cause the most jumps. */
+    static int cascadeMove(Board board) {
+        Side player = board.whoseMove();
+        int[] legal = new int[board.size() * board.size()];
+        int numLegal = board.legalMoves(player, legal);
+        int best = legal[0], mostJumps = -1;
+        for (int k = 0; k < numLegal; k += 1) {
+            Board work = new Board(board);
+            work.addSpot(player, legal[k]);
+            if (work.avalancheSize() > mostJumps) {
+                best = legal[k];
+                mostJumps = work.avalancheSize();
+            }
+        }
+        return best;
+    }
+
+    /** The seed of the moves. */
+    static final long SEED = 123456;
+
+}
@@ -0,0 +1,102 @@
+package jump61;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks of complete AI searches to fixed depths from the positions
+ *  given by Positions.  Each search is made by a new AI, so that none
+ *  benefits from the transposition table of another.  The searches have
+ *  no budget of time or positions, and use a small transposition table
+ *  so that allocating it takes little of the time measured.
+ *  @author Evelyn Vo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchBench {
+
+    /** Number of rows and of columns of the board. */
+    @Param({ "2", "6", "10" })
+    public int size;
+
+    /** Depth of the searches. */
+    @Param({ "1", "2", "3", "4", "5" })
+    public int depth;
+
+    /** Set up a game in the position. */
+    @Setup(Level.Trial)
+    public void setUp() {
+        Main.setSearchLimits(HASH_MEGABYTES, depth, 0, 0);
+        StringBuilder script = new StringBuilder();
+        script.append(String.format("manual blue%nsize %d%n", size));
+        Board board = new Board(size);
+        for (int move : Positions.moves(size)) {
+            script.append(String.format("%d %d%n", board.row(move),
+                                        board.col(move)));
+            board.addSpot(board.whoseMove(), move);
+        }
+        script.append(String.format("quit%n"));
+        List<Reader> inputs = new ArrayList<>();
+        inputs.add(new StringReader(script.toString()));
+        _game = new Game(new TextSource(inputs), (b) -> { },
+                         new SilentReporter(), false);
+        _game.play();
+    }
+
+    /** Create the AI that will search. */
+    @Setup(Level.Invocation)
+    public void newAI() {
+        _ai = new AI(_game, _game.getBoard().whoseMove(), Positions.SEED);
+    }
+
+    /** Search for a move. */
+    @Benchmark
+    public String searchForMove() {
+        return _ai.getMove();
+    }
+
+    /** A Reporter that reports nothing. */
+    private static class SilentReporter implements Reporter {
+        @Override
+        public void announceWin(Side side) {
+        }
+
+        @Override
+        public void announceMove(int row, int col) {
+        }
+
+        @Override
+        public void msg(String format, Object... args) {
+        }
+
+        @Override
+        public void dump(Board board) {
+        }
+
+        @Override
+        public void err(String format, Object... args) {
+        }
+    }
+
+    /** Size in megabytes of the transposition table of each search. */
+    private static final int HASH_MEGABYTES = 1;
+
+    /** The game, in the position once setUp is done. */
+    private Game _game;
+    /** The AI making the next search. */
+    private AI _ai;
+
+}
@@ -1,8 +1,12 @@
 package jump61;
 
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
 
 import static jump61.Side.*;
+import static jump61.Utils.*;
 
 /** An automated Player.
  *  @author P. N. Hilfinger
@@ -15,13 +19,31 @@ class AI extends Player {
     AI(Game game, Side color, long seed) {
         super(game, color);
         _random = new Random(seed);
+        _leader = this;
+    }
+
+    /** A new helper of LEADER, which searches alongside it (see
+     *  searchForMove). */
+    private AI(AI leader) {
+        super(leader.getGame(), leader.getSide());
+        _random = leader._random;
+        _leader = leader;
+    }
+
+    @Override
+    boolean automated() {
+        return true;
     }
 
     @Override
     String getMove() {
+        stop();
         Board board = getGame().getBoard();
         assert getSide() == board.whoseMove();
         int choice = searchForMove();
+        if (Main.ponder()) {
+            startPondering(choice);
+        }
         getGame().reportMove(board.row(choice), board.col(choice));
         return String.format("%d %d", board.row(choice), board.col(choice));
     }
@@ -36,108 +58,484 @@ class AI extends Player {
     your program should always exit with code 0.
      */
 
-    /** Return a move after searching the game tree to DEPTH>0 moves
-     *  from the current position. Assumes the game is not over.
+    /** Return a move after searching the game tree from the current
+     *  position. Assumes the game is not over.
      *  The returned int is the square number to which addSpot will be called.
-     *  SENSE indicates what side you want to get a move for, with SENSE==1
-     *  corresponding to RED and SENSE==-1 corresponding to BLUE.
-     *  The returned move is the optimal move decided by the AI. */
+     *  The search is iteratively deepened: it searches to depth 1, 2, ...
+     *  until it reaches the maximum depth, finds a forced result, or
+     *  exhausts its budget of time or positions (see Main.moveTime,
+     *  Main.moveNodes, and Main.maxDepth).
+     *  The returned move is the best one found by the deepest search that
+     *  ran to completion.  Each iteration leaves its best moves in the
+     *  transposition table, so the principal variation of one iteration is
+     *  searched first by the next.
+     *  When Main.threads() > 1, helpers search the same position on their
+     *  own copies of the board in other threads until this search is done,
+     *  sharing its transposition table ("lazy SMP").  Their results reach
+     *  this search only through the table, which lets it cut off or order
+     *  moves sooner; the move returned is always this search's own.
+     *  Before searching, a position that looks decisive is first given
+     *  to the proof-number solver (see solveForWin).  A winning move that
+     *  it proves is returned instead of the search's, unless the search
+     *  itself finds a forced result: either a win of its own, or a loss,
+     *  which contradicts the proof.
+     *  Statistics of the search are kept for lastStats and reported by
+     *  debug messages at level 1. */
     private int searchForMove() {
-        Board work = new Board(getBoard());
-        int value;
+        if (_table == null) {
+            _table = new TranspositionTable(Main.hashMegabytes());
+        }
+        long start = System.nanoTime();
+        _deadline = Main.moveTime() > 0
+            ? start + Main.moveTime() * NANOS_PER_MILLI : Long.MAX_VALUE;
+        _nodeLimit = Main.moveNodes() > 0 ? Main.moveNodes() : Long.MAX_VALUE;
+        _stopped = false;
+        Board work = searchBoard();
         assert getSide() == work.whoseMove();
-        _foundMove = -1;
-        if (getSide() == RED) {
-            value = minMax(work, 3, true, 1,
-                    -Integer.MIN_VALUE, Integer.MAX_VALUE);
+        int proven = solveForWin(work);
+        ForkJoinTask<?>[] tasks = startHelpers();
+        int choice = deepen(work, 1);
+        _stopped = true;
+        long nodes = _nodes, evals = _evals, cutoffs = _cutoffs,
+            firstCutoffs = _firstCutoffs, probes = _probes, hits = _hits;
+        int maxCascade = _maxCascade;
+        for (int i = 0; i < tasks.length; i += 1) {
+            tasks[i].join();
+            AI helper = _helpers[i];
+            nodes += helper._nodes;
+            evals += helper._evals;
+            cutoffs += helper._cutoffs;
+            firstCutoffs += helper._firstCutoffs;
+            probes += helper._probes;
+            hits += helper._hits;
+            maxCascade = Math.max(maxCascade, helper._maxCascade);
+        }
+        _lastStats = new SearchStats(getSide(), _depthDone,
+                                     System.nanoTime() - start,
+                                     tasks.length + 1, nodes, evals, cutoffs,
+                                     firstCutoffs, probes, hits, maxCascade);
+        debug(1, "%s", _lastStats);
+        debug(2, "%s: table size %d KB", getSide(),
+              _table.memoryBytes() >> 10);
+        if (proven >= 0 && proven != choice) {
+            if (Math.abs(_valueDone) < defaultWinningValue) {
+                choice = proven;
+            } else if ((_valueDone > 0) != (getSide() == RED)) {
+                debug(1, "%s: search refutes solver's move", getSide());
+            }
+        }
+        return choice;
+    }
 
-        } else {
-            value = minMax(work, 3, true, -1,
-                    -Integer.MIN_VALUE, Integer.MAX_VALUE);
+    /** Return a move that ProofSolver proves wins for me from the
+     *  position on WORK, or -1 if WORK does not look decisive or the
+     *  solver proves no win within its budget of Main.solveNodes()
+     *  positions (0 disables it).  The fixed-depth search cannot see
+     *  wins beyond its horizon, but the solver, which goes as deep as a
+     *  proof needs, is cheap only in positions that are nearly decided. */
+    private int solveForWin(Board work) {
+        if (Main.solveNodes() <= 0 || !looksDecisive(work)) {
+            return -1;
+        }
+        if (_solver == null) {
+            _solver = new ProofSolver(Main.hashMegabytes());
+        }
+        Side winner = _solver.solve(work, Main.solveNodes());
+        debug(2, "%s: solver %s after %d positions", getSide(),
+              winner == null ? "undecided" : "found win for " + winner,
+              _solver.nodes());
+        return winner == getSide() ? _solver.winningMove() : -1;
+    }
+
+    /** Return true iff the position on BOARD looks decisive: one side
+     *  holds at least three quarters of the squares, or no square is
+     *  empty and at least a quarter of them are one spot from jumping, so
+     *  that any move may start a cascade that ends the game. */
+    private static boolean looksDecisive(Board board) {
+        int numSquares = board.size() * board.size();
+        return 4 * Math.max(board.numOfSide(RED), board.numOfSide(BLUE))
+            >= 3 * numSquares
+            || (board.numOfSide(WHITE) == 0
+                && 4 * (board.numCritical(RED) + board.numCritical(BLUE))
+                >= numSquares);
+    }
+
+    /** Start Main.threads() - 1 helpers searching the current position in
+     *  parallel, and return their tasks.  Helper #I starts at depth
+     *  1 + I % 2, so that half of them are searching ahead of me. */
+    private ForkJoinTask<?>[] startHelpers() {
+        int numHelpers = Main.threads() - 1;
+        if (_helpers == null || _helpers.length != numHelpers) {
+            _helpers = new AI[numHelpers];
+            for (int i = 0; i < numHelpers; i += 1) {
+                _helpers[i] = new AI(this);
+            }
+        }
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[numHelpers];
+        for (int i = 0; i < numHelpers; i += 1) {
+            AI helper = _helpers[i];
+            Board work = searchBoard();
+            int firstDepth = 1 + i % 2;
+            helper._table = _table;
+            tasks[i] = pool().submit(() -> helper.deepen(work, firstDepth));
+        }
+        return tasks;
+    }
+
+    /** Return the statistics of my last search for a move, or null if I
+     *  have made none. */
+    SearchStats lastStats() {
+        return _lastStats;
+    }
+
+    /** Start searching, in the background and on the opponent's time,
+     *  the position I expect after my move CHOICE and the opponent's
+     *  reply, unless the game ends before then.  The expected reply is the
+     *  best one my last search found, if it recorded one in the
+     *  transposition table; otherwise I search the position after CHOICE.
+     *  The search ("pondering") runs like that of a helper, deepening
+     *  until my next search starts or stop is called.  Its results reach
+     *  that search through the transposition table: if the opponent made
+     *  the expected reply, it finds its own position already searched to
+     *  the depth pondering reached. */
+    private void startPondering(int choice) {
+        Board work = searchBoard();
+        work.addSpot(getSide(), choice);
+        long entry = _table.probe(positionKey(work));
+        _ponderReply = "none";
+        if (entry != 0 && work.getWinner() == null) {
+            int reply = TranspositionTable.move(entry);
+            if (work.isLegal(work.whoseMove(), reply)) {
+                _ponderReply = work.moveString(reply);
+                work.addSpot(work.whoseMove(), reply);
+            }
+        }
+        if (work.getWinner() != null) {
+            return;
+        }
+        if (_ponderer == null) {
+            _ponderer = new AI(this);
+        }
+        AI ponderer = _ponderer;
+        ponderer._table = _table;
+        _stopped = false;
+        _pondering = pool().submit(() -> ponderer.deepen(work, 1));
+    }
+
+    /** Return true iff I am pondering: my search on the opponent's time
+     *  (see startPondering) has started and not yet been stopped. */
+    boolean pondering() {
+        return _pondering != null;
+    }
+
+    /** Stop pondering, if I am. */
+    @Override
+    void stop() {
+        if (_pondering != null) {
+            _stopped = true;
+            _pondering.join();
+            _pondering = null;
+            debug(1, "%s: pondered after reply %s to depth %d, %d nodes",
+                  getSide(), _ponderReply, _ponderer._depthDone,
+                  _ponderer._nodes);
+        }
+    }
+
+    /** Return a private copy of the current position to search. */
+    private Board searchBoard() {
+        Board work = new Board(getBoard());
+        work.setNotifier(NO_NOTIFIER);
+        return work;
+    }
+
+    /** Search BOARD to depths FIRSTDEPTH, FIRSTDEPTH + 1, ..., as
+     *  described for searchForMove, setting _depthDone and _valueDone to
+     *  the depth and value of the last search completed, and return the
+     *  best move it found (-1 if none). */
+    private int deepen(Board board, int firstDepth) {
+        _nodes = _evals = _cutoffs = _firstCutoffs = _probes = _hits = 0;
+        _maxCascade = 0;
+        _depthDone = _valueDone = 0;
+        resetOrdering(board);
+        int choice = -1;
+        for (int depth = firstDepth; depth <= Main.maxDepth(); depth += 1) {
+            _limited = depth > 1 || _leader != this;
+            _rootDepth = depth;
+            _aborted = false;
+            _foundMove = -1;
+            int value = minMax(board, depth, true,
+                               Integer.MIN_VALUE, Integer.MAX_VALUE);
+            if (_aborted) {
+                break;
+            }
+            choice = _foundMove;
+            _depthDone = depth;
+            _valueDone = value;
+            if (Math.abs(value) >= defaultWinningValue || outOfBudget()) {
+                break;
+            }
         }
-        // changed depth from 3 to 4 to see if it would fix the errors with searching to depth 4
-        return _foundMove;
+        return choice;
+    }
+
+    /** Return the pool of threads in which helpers search, creating it on
+     *  first use. */
+    private static synchronized ForkJoinPool pool() {
+        if (_pool == null) {
+            _pool = new ForkJoinPool(Math.max(1, Main.threads() - 1));
+        }
+        return _pool;
+    }
+
+    /** Return true iff the current search has used up its budget of
+     *  positions or time.  A helper's search lasts until its leader's is
+     *  done. */
+    private boolean outOfBudget() {
+        if (_leader != this) {
+            return _leader._stopped;
+        }
+        return _nodes >= _nodeLimit || System.nanoTime() >= _deadline;
     }
 
     /** Find a move from position BOARD and return its value, recording
      *  the move found in _foundMove iff SAVEMOVE. The move
-     *  should have maximal value or have value > BETA if SENSE==1,
-     *  and minimal value or value < ALPHA if SENSE==-1. Searches up to
-     *  DEPTH levels.  Searching at level 0 simply returns a static estimate
-     *  of the board value and does not set _foundMove. If the game is over
-     *  on BOARD, does not set _foundMove.
+     *  should have maximal value or have value > BETA if the side to move
+     *  is RED, and minimal value or value < ALPHA if it is BLUE. Searches up
+     *  to DEPTH levels.  Searching at level 0 simply returns a static
+     *  estimate of the board value and does not set _foundMove. If the game
+     *  is over on BOARD, does not set _foundMove.
      *  The returned int is the heuristic value of the move saved to _foundMove.
      *  In other words, this returns the static evaluation of the best (given
      *  the current board state) move for the given player.
-     *  SENSE indicates what side you want to get a move for, with SENSE==1
-     *  corresponding to RED and SENSE==-1 corresponding to BLUE.
-     *  In other words, RED is the maximal player, while
-     *  BLUE is the minimal player.
+     *  The side to move is BOARD.whoseMove().  RED is the maximal player,
+     *  while BLUE is the minimal player.
      *  BETA is the minimal value / lower bound of the board from
      *  known moves, while ALPHA is the maximal value / upper
-     *  bound of the board from known moves. */
+     *  bound of the board from known moves.
+     *  In a position that looks decisive (see looksDecisive), above the
+     *  last two plies, where it saves a search of a subtree larger than
+     *  the probe, a move that Board.winningMove shows to win at once is
+     *  taken without searching.
+     *  Results are recorded in, and reused from, the transposition
+     *  table, whose best move for BOARD (if any) is tried first.  The
+     *  remaining moves are tried in the order given by orderMoves.
+     *  If the search runs out of budget (and _limited), sets _aborted and
+     *  returns a meaningless value, leaving BOARD unchanged. */
     private int minMax(Board board, int depth, boolean saveMove,
-                       int sense, int alpha, int beta) {
+                       int alpha, int beta) {
+        _nodes += 1;
+        if (_limited && (_nodes & CLOCK_CHECK_MASK) == 0 && outOfBudget()) {
+            _aborted = true;
+            return 0;
+        }
         if (depth == 0 || board.getWinner() != null) {
+            _evals += 1;
             return staticEval(board, defaultWinningValue);
         }
-        int bestSoFar;
-        int bestSoFarInd = _foundMove;
-        if (sense == 1) {
-            bestSoFar = Integer.MIN_VALUE;
-            for (int pos = 0; pos < board.size() * board.size(); pos += 1) {
-                checkSide(board, RED, depth, pos, bestSoFar,
-                        alpha, beta);
-                if (board.isLegal(RED, pos)) {
-                    board.addSpot(RED, pos);
-                    int response = minMax(board, depth - 1, false,
-                            -sense, alpha, beta);
-                    board.undo();
-                    if (response > bestSoFar) {
-                        bestSoFar = response;
-                        bestSoFarInd = pos;
-                        if (saveMove) {
-                            _foundMove = bestSoFarInd;
-                        }
-                        alpha = Math.max(alpha, bestSoFar);
-                        if (alpha >= beta) {
-                            return bestSoFar;
-                        }
-                    }
-                }
+        int winningMove = depth > 2 && looksDecisive(board)
+            ? board.winningMove(board.whoseMove()) : -1;
+        if (winningMove >= 0) {
+            _evals += 1;
+            if (saveMove) {
+                _foundMove = winningMove;
             }
-        } else {
-            bestSoFar = Integer.MAX_VALUE;
-            for (int pos = 0; pos < board.size() * board.size(); pos += 1) {
-                checkSide(board, BLUE, depth, pos, bestSoFar,
-                        alpha, beta);
-                if (board.isLegal(BLUE, pos)) {
-                    board.addSpot(BLUE, pos);
-                    int response = minMax(board, depth - 1, false,
-                            -sense, alpha, beta);
-                    board.undo();
-                    checkSide(board, BLUE, depth, pos, response,
-                            bestSoFar, alpha, beta);
-                    if (response < bestSoFar) {
-                        bestSoFar = response;
-                        bestSoFarInd = pos;
-                        if (saveMove) {
-                            _foundMove = bestSoFarInd;
-                        }
-                        beta = Math.min(beta, bestSoFar);
-                        if (alpha >= beta) {
-                            return bestSoFar;
-                        }
-                    }
+            return board.whoseMove() == RED ? defaultWinningValue
+                : -defaultWinningValue;
+        }
+        long key = positionKey(board);
+        long entry = _table.probe(key);
+        int hashMove = -1;
+        _probes += 1;
+        if (entry != 0) {
+            _hits += 1;
+            hashMove = TranspositionTable.move(entry);
+            if (!saveMove && TranspositionTable.depth(entry) >= depth) {
+                int value = TranspositionTable.value(entry);
+                switch (TranspositionTable.bound(entry)) {
+                case TranspositionTable.EXACT:
+                    return value;
+                case TranspositionTable.LOWER:
+                    alpha = Math.max(alpha, value);
+                    break;
+                default:
+                    beta = Math.min(beta, value);
+                    break;
                 }
+                if (alpha >= beta) {
+                    return value;
+                }
+            }
+        }
+        int alpha0 = alpha, beta0 = beta;
+        Side player = board.whoseMove();
+        int bestSoFar = player == RED ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        int bestSoFarInd = -1;
+        int ply = _rootDepth - depth;
+        if (hashMove >= 0 && !board.isLegal(player, hashMove)) {
+            hashMove = -1;
+        }
+        int numMoves, tried;
+        numMoves = tried = 0;
+        for (int k = hashMove >= 0 ? -1 : 0; alpha < beta; k += 1) {
+            if (k == 0) {
+                numMoves = orderMoves(board, player, ply, hashMove);
+            }
+            if (k >= numMoves) {
+                break;
+            }
+            int pos = k < 0 ? hashMove : selectMove(ply, k, numMoves);
+            board.addSpot(player, pos);
+            tried += 1;
+            _maxCascade = Math.max(_maxCascade, board.avalancheSize());
+            int response = minMax(board, depth - 1, false, alpha, beta);
+            board.undo();
+            if (_aborted) {
+                return 0;
+            }
+            if (player == RED && response > bestSoFar) {
+                bestSoFar = response;
+                bestSoFarInd = pos;
+                alpha = Math.max(alpha, bestSoFar);
+            } else if (player == BLUE && response < bestSoFar) {
+                bestSoFar = response;
+                bestSoFarInd = pos;
+                beta = Math.min(beta, bestSoFar);
+            }
+        }
+        if (alpha >= beta) {
+            _cutoffs += 1;
+            if (tried == 1) {
+                _firstCutoffs += 1;
             }
+            recordCutoff(board, player, ply, depth, bestSoFarInd);
         }
-        if (saveMove) {
+        if (saveMove && bestSoFarInd >= 0) {
             _foundMove = bestSoFarInd;
         }
+        if (bestSoFarInd >= 0) {
+            int bound = bestSoFar <= alpha0 ? TranspositionTable.UPPER
+                : bestSoFar >= beta0 ? TranspositionTable.LOWER
+                : TranspositionTable.EXACT;
+            _table.store(key, depth, bound, bestSoFar, bestSoFarInd);
+        }
         return bestSoFar;
     }
 
+    /** Fill _moves[PLY] with the legal moves of PLAYER on BOARD other
+     *  than HASHMOVE, and _scores[PLY] with the priority of each, and return
+     *  their number.  Moves that make their square overfull, and so start
+     *  a cascade, come first, followed by the killer moves of PLY and then
+     *  by the rest in order of their history scores. */
+    private int orderMoves(Board board, Side player, int ply, int hashMove) {
+        int numSquares = board.size() * board.size();
+        if (_moves[ply] == null || _moves[ply].length < numSquares) {
+            _moves[ply] = new int[numSquares];
+            _scores[ply] = new int[numSquares];
+        }
+        int[] moves = _moves[ply], scores = _scores[ply];
+        int[] history = _history[player.ordinal()];
+        int killer0 = _killers[ply][0], killer1 = _killers[ply][1];
+        board.criticalMask(player, _criticalBits);
+        int numLegal = board.legalMoves(player, moves);
+        int numMoves;
+        numMoves = 0;
+        for (int i = 0; i < numLegal; i += 1) {
+            int n = moves[i];
+            if (n == hashMove) {
+                continue;
+            }
+            moves[numMoves] = n;
+            if ((_criticalBits[n / Long.SIZE] & (1L << n)) != 0) {
+                scores[numMoves] = CRITICAL_SCORE + history[n];
+            } else if (n == killer0) {
+                scores[numMoves] = KILLER_SCORE;
+            } else if (n == killer1) {
+                scores[numMoves] = KILLER_SCORE - 1;
+            } else {
+                scores[numMoves] = history[n];
+            }
+            numMoves += 1;
+        }
+        return numMoves;
+    }
+
+    /** Move the highest-priority move among the first NUMMOVES entries of
+     *  _moves[PLY] at or after index K into position K, and return it.
+     *  Ties go to the earliest (lowest-numbered) square.  Beyond the first
+     *  MAX_SELECTED moves, which is where nearly all cutoffs happen, the
+     *  remaining moves are returned in order, so that trying every move at
+     *  a node of a large board does not take time quadratic in their
+     *  number. */
+    private int selectMove(int ply, int k, int numMoves) {
+        int[] moves = _moves[ply], scores = _scores[ply];
+        if (k >= MAX_SELECTED) {
+            return moves[k];
+        }
+        int best = k;
+        for (int i = k + 1; i < numMoves; i += 1) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        int move = moves[best], score = scores[best];
+        moves[best] = moves[k];
+        scores[best] = scores[k];
+        moves[k] = move;
+        scores[k] = score;
+        return move;
+    }
+
+    /** Record that MOVE by PLAYER on BOARD caused a cutoff at PLY in a
+     *  search of depth DEPTH: it becomes the first killer move at PLY
+     *  (unless it starts a cascade, in which case it is tried early
+     *  anyway), and its history score grows by DEPTH squared. */
+    private void recordCutoff(Board board, Side player, int ply, int depth,
+                              int move) {
+        int[] killers = _killers[ply];
+        if (board.get(move).getSpots() != board.neighbors(move)
+            && killers[0] != move) {
+            killers[1] = killers[0];
+            killers[0] = move;
+        }
+        int[] history = _history[player.ordinal()];
+        history[move] += depth * depth;
+        if (history[move] >= MAX_HISTORY) {
+            for (int n = 0; n < history.length; n += 1) {
+                history[n] >>= 1;
+            }
+        }
+    }
+
+    /** Prepare the move-ordering tables for a search of BOARD: allocate
+     *  them if BOARD is larger than any seen before, forget the killer
+     *  moves of the previous search, and age its history scores. */
+    private void resetOrdering(Board board) {
+        int numSquares = board.size() * board.size();
+        int plies = Main.maxDepth() + 1;
+        if (_moves == null || _moves.length < plies
+            || _history[0].length < numSquares) {
+            _moves = new int[plies][];
+            _scores = new int[plies][];
+            _killers = new int[plies][2];
+            _history = new int[Side.values().length][numSquares];
+            _criticalBits = new long[board.maskWords()];
+        }
+        for (int[] killers : _killers) {
+            killers[0] = killers[1] = -1;
+        }
+        for (int[] history : _history) {
+            for (int n = 0; n < history.length; n += 1) {
+                history[n] >>= 1;
+            }
+        }
+    }
+
+    /** Return the key under which position B is recorded in the
+     *  transposition table. */
+    static long positionKey(Board b) {
+        return b.zobrist() + b.size() * SIZE_KEY;
+    }
+
     /** Return a heuristic estimate of the value of board position B.
      *  Use WINNINGVALUE to indicate a win for Red and -WINNINGVALUE to
      *  indicate a win for Blue.
@@ -153,15 +551,10 @@ class AI extends Player {
     private int staticEval(Board b, int winningValue) {
         Side winner = b.getWinner();
         if (winner == null) {
-            int[][] values = b.heuristicValues();
-            int redSpots = values[1][1];
-            int blueSpots = values[2][1];
-            int redSqOverF = values[1][2];
-            int blueSqOverF = values[2][2];
-            int redSpotsOverF = values[1][3];
-            int blueSpotsOverF = values[2][3];
-            int redScore = (redSpots - redSpotsOverF) + (redSqOverF * 2);
-            int blueScore = -((blueSpots - blueSpotsOverF) + (blueSqOverF * 2));
+            int redScore = b.numPieces(RED) - b.criticalSpots(RED)
+                + b.numCritical(RED) * 2;
+            int blueScore = -(b.numPieces(BLUE) - b.criticalSpots(BLUE)
+                              + b.numCritical(BLUE) * 2);
             return redScore + blueScore;
         } else if (winner.equals(RED)) {
             return winningValue;
@@ -170,55 +563,123 @@ class AI extends Player {
         }
     }
 
-    /** Checks that the whoseMove returns the correct player.
-     * @param board The board
-     * @param player The expected player
-     * @param depth The current depth
-     * @param pos The current position on the board
-     * @param alpha Alpha
-     * @param bestSoFar best
-     * @param beta beta
-     * @param response response
-     */
-    private void checkSide(Board board, Side player, int depth, int pos,
-                           int response, int bestSoFar, int alpha, int beta) {
-        if (!board.whoseMove().equals(player)) {
-            throw new GameException("Incorrect whoseMove at depth " + depth
-                    + ", pos " + pos + ", response " + response + ", bestSoFar "
-                    + bestSoFar + ", alpha " + alpha + ", beta " + beta
-                    +
-                    ". Should be " + player + " but is "
-                    + board.whoseMove() + ".");
-        }
-    }
-
-    /** Checks that the whoseMove returns the correct player.
-     * @param board The board
-     * @param player The expected player
-     * @param depth The current depth
-     * @param pos The current position on the board
-     * @param alpha Alpha
-     * @param bestSoFar best
-     * @param beta beta
-     */
-    private void checkSide(Board board, Side player, int depth, int pos,
-                           int bestSoFar, int alpha, int beta) {
-        if (!board.whoseMove().equals(player) && 1 == 2) {
-            throw new GameException("Incorrect whoseMove at depth " + depth
-                    + ", pos " + pos + ", bestSoFar "
-                    + bestSoFar + ", alpha " + alpha + ", beta " + beta
-                    +
-                    ". Should be " + player + " but is "
-                    + board.whoseMove() + ".");
-        }
-    }
-
     /** A random-number generator used for move selection. */
-    private Random _random;
+    private final Random _random;
 
     /** Used to convey moves discovered by minMax. */
     private int _foundMove;
 
+    /** Number of positions visited by the current search. */
+    private long _nodes;
+
+    /** Numbers of positions evaluated statically by the current search,
+     *  of cutoffs, and of cutoffs by the first move tried. */
+    private long _evals, _cutoffs, _firstCutoffs;
+
+    /** Number of transposition-table probes by the current search, and of
+     *  those that found their position. */
+    private long _probes, _hits;
+
+    /** Jumps in the longest cascade caused by a move of the current
+     *  search. */
+    private int _maxCascade;
+
+    /** Statistics of my last search, or null if none. */
+    private SearchStats _lastStats;
+
+    /** Depth of the last iteration of the current search to complete,
+     *  and the value it found. */
+    private int _depthDone, _valueDone;
+
+    /** Limits on the current search: the value of System.nanoTime() and
+     *  of _nodes at which it stops deepening. */
+    private long _deadline, _nodeLimit;
+
+    /** True iff the current iteration of the search may be cut short when
+     *  it runs out of budget. */
+    private boolean _limited;
+
+    /** True iff the current iteration was cut short. */
+    private boolean _aborted;
+
+    /** The AI whose search I am helping, or this if I am not a helper. */
+    private final AI _leader;
+
+    /** My helpers, if any (see searchForMove). */
+    private AI[] _helpers;
+
+    /** The helper that ponders for me, if I have pondered. */
+    private AI _ponderer;
+
+    /** The expected reply after which _ponderer ponders, or "none". */
+    private String _ponderReply;
+
+    /** The task in which _ponderer is pondering, or null if it is not. */
+    private ForkJoinTask<?> _pondering;
+
+    /** Set by a leader when its search is done, telling its helpers to
+     *  stop, and when its pondering is to stop. */
+    private volatile boolean _stopped;
+
+    /** Threads in which helpers run.  Created on first use. */
+    private static ForkJoinPool _pool;
+
+    /** Notifier for the boards searched by AIs. */
+    private static final Consumer<Board> NO_NOTIFIER = (b) -> { };
+
+    /** The search checks its budget whenever the low bits of _nodes
+     *  selected by this mask are 0. */
+    private static final int CLOCK_CHECK_MASK = (1 << 10) - 1;
+
+    /** Nanoseconds per millisecond. */
+    private static final long NANOS_PER_MILLI = 1000000;
+
+    /** Depth of the current iteration; a call of minMax with depth D is
+     *  at ply _rootDepth - D. */
+    private int _rootDepth;
+
+    /** _moves[P] and _scores[P] hold the moves generated at ply P and
+     *  their priorities, so that move generation does not allocate.  Each
+     *  ply's arrays are allocated when the search first reaches it. */
+    private int[][] _moves, _scores;
+
+    /** Mask of the moves that start cascades at a node, filled by
+     *  orderMoves. */
+    private long[] _criticalBits;
+
+    /** _killers[P] holds the two most recent moves (most recent first) that
+     *  caused cutoffs at ply P of the current search, or -1. */
+    private int[][] _killers;
+
+    /** _history[S][N] measures how often a move by the side with ordinal S
+     *  on square #N has caused cutoffs, weighted by the depth searched. */
+    private int[][] _history;
+
+    /** Priority of a move that starts a cascade. */
+    private static final int CRITICAL_SCORE = 1 << 30;
+
+    /** Priority of the first killer move at a ply (the second gets one
+     *  less). */
+    private static final int KILLER_SCORE = 1 << 29;
+
+    /** Number of moves at a node that selectMove picks in order of
+     *  priority. */
+    private static final int MAX_SELECTED = 64;
+
+    /** History scores are halved when one reaches this value, keeping them
+     *  below KILLER_SCORE. */
+    private static final int MAX_HISTORY = 1 << 28;
+
+    /** Results of previous searches.  Allocated on first use. */
+    private TranspositionTable _table;
+
+    /** Solver of decisive positions.  Allocated on first use. */
+    private ProofSolver _solver;
+
+    /** Multiplier of the board size in transposition-table keys, so that
+     *  positions on boards of different sizes get different keys. */
+    private static final long SIZE_KEY = 0x9E3779B97F4A7C15L;
+
     /** The default winning value for RED. */
     private final int defaultWinningValue = 10000;
 
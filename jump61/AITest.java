@@ -5,7 +5,13 @@ import static jump61.Side.*;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
 import java.util.Scanner;
 
 import org.junit.Test;
@@ -49,8 +55,91 @@ public class AITest {
         assertEquals("extra squares filled", contents.length / 4, c);
     }
 
+    /** Return a game in which both players are manual, after it has run
+     *  the commands in SCRIPT. */
+    private Game game(String script) {
+        List<Reader> inputs = new ArrayList<>();
+        inputs.add(new StringReader(String.format("manual red%nmanual blue%n"
+                                                  + "%s%nquit%n", script)));
+        Game game = new Game(new TextSource(inputs), (b) -> { },
+                             new TextReporter(), false);
+        game.play();
+        return game;
+    }
+
     private static final String NL = System.getProperty("line.separator");
 
+    /** Return the side that wins B with best play, found by trying every
+     *  sequence of moves, and following Board.whoseMove after each of them.
+     *  MEMO records the winners of the positions already searched, by
+     *  AI.positionKey. */
+    private Side winner(Board B, HashMap<Long, Side> memo) {
+        if (B.getWinner() != null) {
+            return B.getWinner();
+        }
+        long key = AI.positionKey(B);
+        Side result = memo.get(key);
+        if (result != null) {
+            return result;
+        }
+        Side player = B.whoseMove();
+        result = player.opposite();
+        for (int n = 0; n < B.size() * B.size() && result != player;
+             n += 1) {
+            if (B.isLegal(player, n)) {
+                B.addSpot(player, n);
+                if (winner(B, memo) == player) {
+                    result = player;
+                }
+                B.undo();
+            }
+        }
+        memo.put(key, result);
+        return result;
+    }
+
+    /** Check that SOLVER, if it solves B, finds the same winner as an
+     *  exhaustive search, and a move that keeps the win, using MEMO as
+     *  for winner. */
+    private void checkSolve(ProofSolver solver, Board B,
+                            HashMap<Long, Side> memo) {
+        Side solved = solver.solve(B, 100000);
+        if (solved == null) {
+            return;
+        }
+        Side player = B.whoseMove();
+        assertEquals(B.toString(), winner(B, memo), solved);
+        if (solved == player) {
+            int move = solver.winningMove();
+            assertTrue(B.toString(), B.isLegal(player, move));
+            B.addSpot(player, move);
+            assertEquals(B.toString(), player, winner(B, memo));
+            B.undo();
+        }
+    }
+
+    /** Return true iff some legal move on B leaves the same side to
+     *  move. */
+    private boolean keepsMover(Board B) {
+        Side player = B.whoseMove();
+        boolean result = false;
+        for (int n = 0; n < B.size() * B.size() && !result; n += 1) {
+            if (B.isLegal(player, n)) {
+                B.addSpot(player, n);
+                result = B.getWinner() == null && B.whoseMove() == player;
+                B.undo();
+            }
+        }
+        return result;
+    }
+
+    /** Position keys used in tests of TranspositionTable. */
+    private static final long
+        KEY_A = 0x5d1f3a8b2c4e6071L,
+        KEY_B = 0x9e3779b97f4a7c15L,
+        KEY_C = 0x1234567887654321L,
+        KEY_D = 0xc2b2ae3d27d4eb4fL;
+
     /** Tests that AI makes legal moves. */
     @Test
     public void legal() {
@@ -186,6 +275,214 @@ public class AITest {
 
     }
 
+    /** Tests that an AI pondering on its opponent's time leaves the game
+     *  board alone, and stops when told to. */
+    @Test(timeout = 60000)
+    public void ponderStops() {
+        Game game = game("size 6\nset 1 1 2 r");
+        Board B = game.getBoard();
+        Board original = new Board(B);
+        AI ai = new AI(game, BLUE, 1);
+        Main.setSearchLimits(Defaults.HASH_MEGABYTES,
+                             Defaults.MAX_SEARCH_DEPTH, 1000, 0);
+        Main.setPonder(true);
+        try {
+            ai.getMove();
+            assertTrue(ai.pondering());
+            assertEquals(original, B);
+            ai.stop();
+            assertFalse(ai.pondering());
+            assertEquals(original, B);
+            ai.getMove();
+            assertTrue(ai.pondering());
+            ai.stop();
+        } finally {
+            Main.setPonder(false);
+            Main.setSearchLimits(Defaults.HASH_MEGABYTES,
+                                 Defaults.MAX_SEARCH_DEPTH,
+                                 Defaults.MOVE_NODES, 0);
+        }
+        assertFalse(ai.pondering());
+        assertEquals(original, B);
+    }
+
+    /** Tests that the statistics of an AI's search account for every
+     *  position it searched: each is either evaluated statically or
+     *  looked up in the transposition table. */
+    @Test
+    public void searchStats() {
+        Game game = game("size 4");
+        AI ai = new AI(game, RED, 1);
+        assertNull(ai.lastStats());
+        try {
+            Main.setSearchLimits(Defaults.HASH_MEGABYTES, 1, 0, 0);
+            ai.getMove();
+            SearchStats stats = ai.lastStats();
+            assertEquals(RED, stats.side());
+            assertEquals(1, stats.depth());
+            assertEquals(1, stats.threads());
+            assertEquals(17, stats.nodes());
+            assertEquals(16, stats.evals());
+            assertEquals(1, stats.probes());
+            assertEquals(0, stats.hits());
+            assertEquals(0, stats.cutoffs());
+            assertEquals(0, stats.maxCascade());
+            Main.setSearchLimits(Defaults.HASH_MEGABYTES, 4, 0, 0);
+            ai.getMove();
+            stats = ai.lastStats();
+            assertEquals(4, stats.depth());
+            assertEquals(stats.nodes(), stats.evals() + stats.probes());
+            assertTrue(stats.hits() > 0);
+            assertTrue(stats.hits() <= stats.probes());
+            assertTrue(stats.cutoffs() > 0);
+            assertTrue(stats.firstCutoffs() <= stats.cutoffs());
+            assertEquals((double) stats.firstCutoffs() / stats.cutoffs(),
+                         stats.firstCutoffRate(), 1e-9);
+            assertTrue(stats.nanos() > 0);
+        } finally {
+            Main.setSearchLimits(Defaults.HASH_MEGABYTES,
+                                 Defaults.MAX_SEARCH_DEPTH,
+                                 Defaults.MOVE_NODES, 0);
+        }
+    }
+
+    /** Proves the forced win of 05-findforcedwin-1.in, which takes more
+     *  than one move. */
+    @Test
+    public void solveForcedWin() {
+        Board B = new Board(3);
+        B.set(1, 1, 1, BLUE);
+        B.set(1, 2, 3, RED);
+        B.set(1, 3, 2, BLUE);
+        B.set(2, 1, 3, RED);
+        B.set(2, 2, 3, RED);
+        B.set(2, 3, 1, BLUE);
+        B.set(3, 1, 1, BLUE);
+        B.set(3, 2, 3, BLUE);
+        B.set(3, 3, 1, BLUE);
+        ProofSolver solver = new ProofSolver(1);
+        assertEquals(BLUE, solver.solve(B, 10000));
+        int move = solver.winningMove();
+        assertTrue(B.isLegal(BLUE, move));
+        B.addSpot(BLUE, move);
+        assertNull(B.getWinner());
+        assertEquals(BLUE, solver.solve(B, 10000));
+        assertEquals(-1, solver.winningMove());
+    }
+
+    /** Checks the verdicts and winning moves of ProofSolver against an
+     *  exhaustive search over nearly full 3x3 boards, in many of which a
+     *  cascade loses spots and so leaves the same side to move (see
+     *  Board.whoseMove).  The first is a position in which every move of
+     *  Red loses, although the solver once claimed a win with 2 2. */
+    @Test
+    public void solveExhaustive() {
+        HashMap<Long, Side> memo = new HashMap<>();
+        ProofSolver solver = new ProofSolver(1);
+        Board B = new Board(3);
+        B.set(1, 2, 3, BLUE);
+        B.set(1, 3, 2, BLUE);
+        B.set(2, 1, 2, BLUE);
+        B.set(2, 2, 3, RED);
+        B.set(2, 3, 3, BLUE);
+        B.set(3, 1, 2, RED);
+        B.set(3, 2, 2, RED);
+        B = new Board(B);
+        assertEquals(RED, B.whoseMove());
+        assertEquals(BLUE, solver.solve(B, 100000));
+        checkSolve(solver, B, memo);
+        Random random = new Random(1);
+        int keepsMover;
+        keepsMover = 0;
+        for (int k = 0; k < 200; k += 1) {
+            B = new Board(3);
+            for (int n = 0; n < 9; n += 1) {
+                int color = random.nextInt(7);
+                if (color > 0) {
+                    B.set(B.row(n), B.col(n),
+                          B.neighbors(n) - random.nextInt(2),
+                          color % 2 == 0 ? RED : BLUE);
+                }
+            }
+            B = new Board(B);
+            if (B.getWinner() == null) {
+                if (keepsMover(B)) {
+                    keepsMover += 1;
+                }
+                checkSolve(solver, B, memo);
+            }
+        }
+        assertTrue(keepsMover > 0);
+    }
+
+    /** Tests that a TranspositionTable returns the fields stored for a
+     *  position, and nothing for positions not stored. */
+    @Test
+    public void tableStoreProbe() {
+        TranspositionTable table = new TranspositionTable(1);
+        assertEquals(0, table.probe(KEY_A));
+        table.store(KEY_A, 7, TranspositionTable.LOWER, -12345, 42);
+        long entry = table.probe(KEY_A);
+        assertEquals(7, TranspositionTable.depth(entry));
+        assertEquals(TranspositionTable.LOWER,
+                     TranspositionTable.bound(entry));
+        assertEquals(-12345, TranspositionTable.value(entry));
+        assertEquals(42, TranspositionTable.move(entry));
+        assertEquals(0, table.probe(KEY_B));
+        table.store(KEY_A, 1000, TranspositionTable.EXACT, 5, -1);
+        entry = table.probe(KEY_A);
+        assertEquals(255, TranspositionTable.depth(entry));
+        assertEquals(TranspositionTable.EXACT,
+                     TranspositionTable.bound(entry));
+        assertEquals(-1, TranspositionTable.move(entry));
+        table.store(KEY_B, 1, TranspositionTable.UPPER, 0, 1 << 22);
+        assertEquals(-1, TranspositionTable.move(table.probe(KEY_B)));
+    }
+
+    /** Tests the replacement policy of a table with a single bucket: the
+     *  first entry keeps the most deeply searched position, and the second
+     *  the most recently stored. */
+    @Test
+    public void tableReplacement() {
+        TranspositionTable table = new TranspositionTable(0);
+        table.store(KEY_A, 5, TranspositionTable.EXACT, 1, 1);
+        table.store(KEY_B, 3, TranspositionTable.EXACT, 2, 2);
+        assertEquals(1, TranspositionTable.value(table.probe(KEY_A)));
+        assertEquals(2, TranspositionTable.value(table.probe(KEY_B)));
+        table.store(KEY_C, 2, TranspositionTable.EXACT, 3, 3);
+        assertEquals(1, TranspositionTable.value(table.probe(KEY_A)));
+        assertEquals(0, table.probe(KEY_B));
+        assertEquals(3, TranspositionTable.value(table.probe(KEY_C)));
+        table.store(KEY_D, 6, TranspositionTable.EXACT, 4, 4);
+        assertEquals(4, TranspositionTable.value(table.probe(KEY_D)));
+        assertEquals(1, TranspositionTable.value(table.probe(KEY_A)));
+        assertEquals(0, table.probe(KEY_C));
+        table.store(KEY_D, 1, TranspositionTable.UPPER, 5, 5);
+        assertEquals(5, TranspositionTable.value(table.probe(KEY_D)));
+        assertEquals(1, TranspositionTable.depth(table.probe(KEY_D)));
+        assertEquals(1, TranspositionTable.value(table.probe(KEY_A)));
+    }
+
+    /** Tests that a table treats an entry whose key and data come from
+     *  two different stores, as simultaneous stores from two threads may
+     *  leave it, as empty. */
+    @Test
+    public void tableTornEntry() throws ReflectiveOperationException {
+        TranspositionTable table = new TranspositionTable(0);
+        table.store(KEY_B, 3, TranspositionTable.EXACT, 2, 2);
+        long dataB = table.probe(KEY_B);
+        table.store(KEY_A, 5, TranspositionTable.EXACT, 1, 1);
+        assertEquals(dataB, table.probe(KEY_B));
+        Field field = TranspositionTable.class.getDeclaredField("_data");
+        field.setAccessible(true);
+        long[] data = (long[]) field.get(table);
+        data[0] = dataB;
+        assertEquals(0, table.probe(KEY_A));
+        assertEquals(dataB, table.probe(KEY_B));
+        data[1] = table.probe(KEY_B) + 1;
+        assertEquals(0, table.probe(KEY_B));
+    }
+
     /* Autograder Tests */
 
     /** Runs the 05-findforcedwin-1.in test. */
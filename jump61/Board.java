@@ -1,8 +1,9 @@
 package jump61;
 
 import java.util.ArrayList;
-import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Formatter;
+import java.util.Random;
 
 import java.util.function.Consumer;
 
@@ -13,6 +14,13 @@ import static jump61.Side.*;
  *  squares by rows, with squares in row 1 numbered from 0 to size()-1, in
  *  row 2 numbered from size() to 2*size() - 1, etc. (i.e., row-major order).
  *
+ *  The contents of the squares are kept packed, one byte per square (see
+ *  Square.code), in a flat array indexed by square number.  They are also
+ *  kept bit-sliced as masks (see Geometry): one mask of the squares of
+ *  each side, and one per bit of the spot counts, from which the squares
+ *  that are legal moves or almost overfilled are computed a word at a
+ *  time.
+ *
  *  A Board may be given a notifier---a Consumer<Board> whose
  *  .accept method is called whenever the Board's contents are changed.
  *
@@ -28,59 +36,78 @@ class Board {
     /** An N x N board in initial configuration. */
     Board(int N) {
         this();
-        if (N < 2 || N > 10) {
+        if (N < 2 || N > Defaults.MAX_BOARD_SIZE) {
             throw new GameException("Invalid board size.");
         }
         _size = N;
-        _board = new Square[N][N];
-        for (int row = 0; row < N; row += 1) {
-            for (int col = 0; col < N; col += 1) {
-                _board[row][col] = Square.INITIAL;
-            }
+        _geometry = Geometry.of(N);
+        if (N >= TILED_SIZE) {
+            _tiles = new Tiles(N);
+        } else {
+            _cells = new byte[N * N];
+            Arrays.fill(_cells, (byte) Square.INITIAL_CODE);
         }
-        _history = new ArrayList<Board>();
-        markUndo();
+        clearUndo();
         _readonlyBoard = new ConstantBoard(this);
-        _numRed = 0;
-        _numBlue = 0;
+        setNumOfSide();
     }
 
     /** A board whose initial contents are copied from BOARD0, but whose
-     *  undo history is clear, and whose notifier does nothing. */
+     *  undo history is clear, and whose notifier does nothing.  This takes
+     *  constant time: the copy shares BOARD0's storage until either
+     *  changes. */
     Board(Board board0) {
-        _size = board0.size();
-        _board = new Square[_size][_size];
-        _history = new ArrayList<Board>();
-        Square[][] boardToCopy = new Square[_size][_size];
-        for (int row = 1; row <= board0.size(); row += 1) {
-            for (int col = 1; col <= board0.size(); col += 1) {
-                Square origPos = board0.get(sqNum(row, col));
-                this._board[row - 1][col - 1] = Square.square(origPos.getSide(),
-                        origPos.getSpots());
-                boardToCopy[row - 1][col - 1] = Square.square(origPos.getSide(),
-                        origPos.getSpots());
-            }
-        }
-        Board copy = new Board();
-        copy._size = _size;
-        copy._board = boardToCopy;
+        share(board0.contents());
+        clearUndo();
         _readonlyBoard = new ConstantBoard(this);
-        _history.add(copy);
         _notifier = board0._notifier;
-        setNumOfSide();
     }
 
     /** Sets the number of RED squares and the number
-     * of BLUE squares initially. */
+     * of BLUE squares initially, together with the spot totals and
+     * masks.  Tiled boards keep no masks, and take time proportional to
+     * the number of their tiles to count. */
     void setNumOfSide() {
+        int words = _geometry.maskWords();
+        for (int s = 0; s < _sideBits.length; s += 1) {
+            _sideBits[s] = _tiles == null ? new long[words] : null;
+        }
+        for (int p = 0; p < _spotBits.length; p += 1) {
+            _spotBits[p] = _tiles == null ? new long[words] : null;
+        }
         _numRed = _numBlue = 0;
-        for (int i = 0; i < size() * size(); i += 1) {
-            Side curr = get(i).getSide();
+        _numSpots = 0;
+        _zobrist = 0;
+        Arrays.fill(_sideSpots, 0);
+        Arrays.fill(_criticalSquares, 0);
+        Arrays.fill(_criticalSpots, 0);
+        _clustersValid = false;
+        if (_tiles != null) {
+            _numSpots = _sideSpots[WHITE.ordinal()] = _size * _size;
+            _tiles.forEachChanged((n) -> updateCounts(n, Square.INITIAL_CODE,
+                                                      _tiles.get(n)));
+            return;
+        }
+        for (int i = 0; i < _cells.length; i += 1) {
+            _zobrist ^= zobristKey(i, _cells[i]);
+            Side curr = side(i);
             if (curr.equals(RED)) {
                 _numRed += 1;
             } else if (curr.equals(BLUE)) {
                 _numBlue += 1;
             }
+            _numSpots += spots(i);
+            _sideSpots[curr.ordinal()] += spots(i);
+            _sideBits[curr.ordinal()][i >>> WORD_SHIFT] |= 1L << i;
+            for (int p = 0; p < _spotBits.length; p += 1) {
+                if ((spots(i) & (1 << p)) != 0) {
+                    _spotBits[p][i >>> WORD_SHIFT] |= 1L << i;
+                }
+            }
+            if (spots(i) == _geometry.neighbors(i)) {
+                _criticalSquares[curr.ordinal()] += 1;
+                _criticalSpots[curr.ordinal()] += spots(i);
+            }
         }
     }
 
@@ -100,34 +127,84 @@ class Board {
     /** Copy the contents of BOARD into me.
      * Clears my history and number of moves. */
     void copy(Board board) {
-        _size = board.size();
-        _board = new Square[_size][_size];
-        for (int row = 1; row <= board.size(); row += 1) {
-            for (int col = 1; col <= board.size(); col += 1) {
-                Square origPos = board.get(sqNum(row, col));
-                _board[row - 1][col - 1] = Square.square(origPos.getSide(),
-                        origPos.getSpots());
-            }
+        share(board.contents());
+        clearUndo();
+    }
+
+    /** Return the Board holding my contents: myself, unless I am a view
+     *  of another Board. */
+    Board contents() {
+        return this;
+    }
+
+    /** Return an immutable copy of my current contents, taking constant
+     *  time.  The snapshot shares my storage until I next change, when I
+     *  copy whatever of it I change: the array of squares and the masks
+     *  of a board smaller than TILED_SIZE, or the index of the tiles and
+     *  the tiles changed, of a larger one.  A snapshot may be read by any
+     *  thread, but must be taken by the thread that changes me. */
+    Board snapshot() {
+        if (_snapshot == null) {
+            Board frozen = new Board();
+            frozen.share(this);
+            _snapshot = new ConstantBoard(frozen);
         }
-        setNumOfSide();
-        _history = new ArrayList<Board>();
-        markUndo();
+        return _snapshot;
     }
 
-    /** Copy the contents of BOARD into me, without modifying my undo
-     *  history. Assumes BOARD and I have the same size. */
-    private void internalCopy(Board board) {
-        assert size() == board.size();
-        for (int row = 1; row <= board.size(); row += 1) {
-            for (int col = 1; col <= board.size(); col += 1) {
-                Square origPos = board.get(sqNum(row, col));
-                _board[row - 1][col - 1] = Square.square(origPos.getSide(),
-                        origPos.getSpots());
+    /** Make my contents (squares, counts, and masks) those of BOARD,
+     *  sharing its storage until either of us changes it. */
+    private void share(Board board) {
+        if (_geometry != board._geometry) {
+            _clusters = null;
+        }
+        _clustersValid = false;
+        _size = board._size;
+        _geometry = board._geometry;
+        _cells = board._cells;
+        _tiles = board._tiles;
+        System.arraycopy(board._sideBits, 0, _sideBits, 0, _sideBits.length);
+        System.arraycopy(board._spotBits, 0, _spotBits, 0, _spotBits.length);
+        _numRed = board._numRed;
+        _numBlue = board._numBlue;
+        _numSpots = board._numSpots;
+        _zobrist = board._zobrist;
+        System.arraycopy(board._sideSpots, 0, _sideSpots, 0,
+                         _sideSpots.length);
+        System.arraycopy(board._criticalSquares, 0, _criticalSquares, 0,
+                         _criticalSquares.length);
+        System.arraycopy(board._criticalSpots, 0, _criticalSpots, 0,
+                         _criticalSpots.length);
+        _shared = board._shared = true;
+        _snapshot = null;
+    }
+
+    /** Give me my own copy of any storage I share with other Boards (see
+     *  share), before changing it. */
+    private void unshare() {
+        if (_cells != null) {
+            _cells = _cells.clone();
+        } else {
+            _tiles = new Tiles(_tiles);
+        }
+        for (int s = 0; s < _sideBits.length; s += 1) {
+            if (_sideBits[s] != null) {
+                _sideBits[s] = _sideBits[s].clone();
             }
         }
-        setNumOfSide();
-        setNotifier(board._notifier);
-        markUndo();
+        for (int p = 0; p < _spotBits.length; p += 1) {
+            if (_spotBits[p] != null) {
+                _spotBits[p] = _spotBits[p].clone();
+            }
+        }
+        _shared = false;
+        _snapshot = null;
+    }
+
+    /** Return the Tiles holding my squares, or null if I keep them in an
+     *  array. */
+    Tiles tiles() {
+        return _tiles;
     }
 
     /** Return the number of rows and of columns of THIS. */
@@ -135,6 +212,11 @@ class Board {
         return _size;
     }
 
+    /** Return the Geometry describing the layout of my squares. */
+    Geometry geometry() {
+        return _geometry;
+    }
+
     /** Returns the contents of the square at row R, column C
      *  1 <= R, C <= size (). */
     Square get(int r, int c) {
@@ -148,27 +230,47 @@ class Board {
         if (!exists(n)) {
             throw new GameException("Invalid square number at get.");
         }
-        int col = col(n) - 1;
-        int row = row(n) - 1;
-        return _board[row][col];
+        return Square.fromCode(code(n));
+    }
+
+    /** Returns the packed code (see Square.code) of square #N, which must
+     *  exist. */
+    int code(int n) {
+        return _cells != null ? _cells[n] : _tiles.get(n);
+    }
+
+    /** Set the packed code of square #N to CODE, without updating
+     *  anything else. */
+    private void putCode(int n, int code) {
+        if (_cells != null) {
+            _cells[n] = (byte) code;
+        } else {
+            _tiles.set(n, code);
+        }
+    }
+
+    /** Returns the number of spots on square #N, which must exist. */
+    private int spots(int n) {
+        return Square.spotsOf(code(n));
+    }
+
+    /** Returns the Side occupying square #N, which must exist. */
+    private Side side(int n) {
+        return Square.sideOf(code(n));
     }
 
     /** Returns the total number of spots on the board. */
     int numPieces() {
-        int numSpots = 0;
-        for (int i = 0; i < size() * size(); i += 1) {
-            numSpots += get(i).getSpots();
-        }
-        if (numSpots < size() * size()) {
+        if (_numSpots < _size * _size) {
             throw new GameException("Every square must have at least 1 spot.");
         }
-        return numSpots;
+        return _numSpots;
     }
 
     /** Returns the Side of the player who would be next to move.  If the
      *  game is won, this will return the loser (assuming legal position). */
     Side whoseMove() {
-        Side curr = ((numPieces() + size()) & 1) == 0 ? RED : BLUE;
+        Side curr = ((_numSpots + _size) & 1) == 0 ? RED : BLUE;
         return curr;
     }
 
@@ -185,12 +287,12 @@ class Board {
 
     /** Return the row number for square #N. */
     final int row(int n) {
-        return n / size() + 1;
+        return geometry().row(n);
     }
 
     /** Return the column number for square #N. */
     final int col(int n) {
-        return n % size() + 1;
+        return geometry().col(n);
     }
 
     /** Return the square number of row R, column C. */
@@ -211,19 +313,55 @@ class Board {
     /** Returns true iff it would currently be legal for PLAYER to add a spot
         to square at row R, column C. */
     boolean isLegal(Side player, int r, int c) {
-        return isLegal(player, sqNum(r, c));
+        return exists(r, c) && isLegal(player, sqNum(r, c));
     }
 
     /** Returns true iff it would currently be legal for PLAYER to add a spot
      *  to square #N. */
     boolean isLegal(Side player, int n) {
-        if (!exists(n)) {
+        if (!exists(n) || !isLegal(player)) {
             return false;
+        } else if (_tiles != null) {
+            Side side = side(n);
+            return side == player || side == WHITE;
+        }
+        int w = n >>> WORD_SHIFT;
+        long bit = 1L << n;
+        return ((_sideBits[player.ordinal()][w]
+                 | _sideBits[WHITE.ordinal()][w]) & bit) != 0;
+    }
+
+    /** Store the numbers of the squares on which PLAYER may legally move
+     *  in MOVES[0 .. k-1] in increasing order, and return k.  MOVES must
+     *  have room for all of them (size() * size() always suffices).  The
+     *  time taken is proportional to k plus the number of words in a
+     *  mask (see legalMask). */
+    int legalMoves(Side player, int[] moves) {
+        if (!isLegal(player)) {
+            return 0;
+        }
+        int k;
+        k = 0;
+        if (_tiles != null) {
+            for (int n = 0; n < _size * _size; n += 1) {
+                if (isLegal(player, n)) {
+                    moves[k] = n;
+                    k += 1;
+                }
+            }
+            return k;
+        }
+        long[] mine = _sideBits[player.ordinal()],
+            white = _sideBits[WHITE.ordinal()];
+        for (int w = 0; w < _geometry.maskWords(); w += 1) {
+            long bits = mine[w] | white[w];
+            while (bits != 0) {
+                moves[k] = (w << WORD_SHIFT) + Long.numberOfTrailingZeros(bits);
+                k += 1;
+                bits &= bits - 1;
+            }
         }
-        Side curr = get(n).getSide();
-        boolean validColor = curr.equals(player) || curr.equals(WHITE);
-        boolean isCurrentPlayer = isLegal(player);
-        return isCurrentPlayer && validColor;
+        return k;
     }
 
     /** Returns true iff PLAYER is allowed to move at this point. */
@@ -236,7 +374,7 @@ class Board {
 
     /** Returns the winner of the current position, if the game is over,
      *  and otherwise null. */
-    final Side getWinner() {
+    Side getWinner() {
         if (_numRed == size() * size()) {
             return RED;
         } else if (_numBlue == size() * size()) {
@@ -248,14 +386,156 @@ class Board {
     /** Returns the total number of spots on the board for a given side.
      * @param side The side that is being checked. */
     int numPieces(Side side) {
-        int numSpots = 0;
-        for (int i = 0; i < size() * size(); i += 1) {
-            Square curr = get(i);
-            if (curr.getSide().equals(side)) {
-                numSpots += curr.getSpots();
+        return _sideSpots[side.ordinal()];
+    }
+
+    /** Return the number of squares of SIDE that are almost overfilled:
+     *  whose number of spots equals their number of neighbors, so that one
+     *  more spot starts a cascade. */
+    int numCritical(Side side) {
+        return _criticalSquares[side.ordinal()];
+    }
+
+    /** Return the total number of spots on squares of SIDE that are almost
+     *  overfilled (see numCritical). */
+    int criticalSpots(Side side) {
+        return _criticalSpots[side.ordinal()];
+    }
+
+    /** Return the number of longs in the masks filled by legalMask and
+     *  criticalMask. */
+    int maskWords() {
+        return geometry().maskWords();
+    }
+
+    /** Set MASK[0 .. maskWords() - 1] to the mask of squares on which
+     *  PLAYER may legally move (see Geometry): bit N % 64 of MASK[N / 64]
+     *  is set iff isLegal(PLAYER, N). */
+    void legalMask(Side player, long[] mask) {
+        int words = _geometry.maskWords();
+        if (!isLegal(player) || _tiles != null) {
+            Arrays.fill(mask, 0, words, 0L);
+            for (int n = 0; isLegal(player) && n < _size * _size; n += 1) {
+                if (isLegal(player, n)) {
+                    mask[n >>> WORD_SHIFT] |= 1L << n;
+                }
+            }
+            return;
+        }
+        long[] mine = _sideBits[player.ordinal()],
+            white = _sideBits[WHITE.ordinal()];
+        for (int w = 0; w < words; w += 1) {
+            mask[w] = mine[w] | white[w];
+        }
+    }
+
+    /** Set MASK[0 .. maskWords() - 1] to the mask of squares of SIDE that
+     *  are almost overfilled (see numCritical and legalMask). */
+    void criticalMask(Side side, long[] mask) {
+        if (_tiles != null) {
+            Arrays.fill(mask, 0, _geometry.maskWords(), 0L);
+            for (int n = 0; n < _size * _size; n += 1) {
+                if (side(n) == side && spots(n) == neighbors(n)) {
+                    mask[n >>> WORD_SHIFT] |= 1L << n;
+                }
+            }
+            return;
+        }
+        long[] owned = _sideBits[side.ordinal()];
+        for (int w = 0; w < _geometry.maskWords(); w += 1) {
+            long critical = 0;
+            for (int k = 1; k <= Geometry.MAX_NEIGHBORS; k += 1) {
+                long equal = _geometry.degreeBits(k, w);
+                for (int p = 0; p < _spotBits.length; p += 1) {
+                    long plane = _spotBits[p][w];
+                    equal &= (k & (1 << p)) != 0 ? plane : ~plane;
+                }
+                critical |= equal;
+            }
+            mask[w] = critical & owned[w];
+        }
+    }
+
+    /** Return a move by PLAYER that is certain to win the game at once,
+     *  or -1 if the clusters of almost overfilled squares (see
+     *  CriticalClusters) show none, or it is not PLAYER's move.  A move
+     *  on an almost overfilled square captures at least the reach of its
+     *  cluster, and so wins if that includes every square PLAYER does
+     *  not hold already; moves whose cascades go further than that are
+     *  not found.  A square not next to any almost overfilled square is
+     *  in no reach, so most positions are ruled out by a quick scan.
+     *  Otherwise, the clusters are consulted.  They are kept up to
+     *  date as squares become almost overfilled, and rebuilt, in time
+     *  proportional to the number of squares, when one has stopped being
+     *  so; each candidate move then costs a find and a comparison of
+     *  masks, with no cascade simulated.  Always -1 on boards of more
+     *  than MAX_CLUSTER_SIZE squares on a side, whose clusters would take
+     *  too much storage. */
+    int winningMove(Side player) {
+        if (_size > MAX_CLUSTER_SIZE || !isLegal(player)
+            || numCritical(player) == 0) {
+            return -1;
+        }
+        int words = _geometry.maskWords();
+        if (_clusters == null) {
+            _clusters = new CriticalClusters(_geometry);
+            _clusterBits = new long[words];
+            _targetBits = new long[words];
+        }
+        long[] other = _sideBits[player.opposite().ordinal()],
+            white = _sideBits[WHITE.ordinal()];
+        for (int w = 0; w < words; w += 1) {
+            _targetBits[w] = other[w] | white[w];
+            for (long bits = _targetBits[w]; bits != 0; bits &= bits - 1) {
+                int n = (w << WORD_SHIFT) + Long.numberOfTrailingZeros(bits);
+                if (!nearCritical(n)) {
+                    return -1;
+                }
+            }
+        }
+        if (!_clustersValid) {
+            _clusters.clear();
+            addClusters(RED);
+            addClusters(BLUE);
+            _clustersValid = true;
+        }
+        criticalMask(player, _clusterBits);
+        for (int w = 0; w < words; w += 1) {
+            for (long bits = _clusterBits[w]; bits != 0; bits &= bits - 1) {
+                int n = (w << WORD_SHIFT) + Long.numberOfTrailingZeros(bits);
+                if (_clusters.reaches(_clusters.find(n), _targetBits)) {
+                    return n;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /** Return true iff square #N or one of its neighbors is almost
+     *  overfilled, as every square in the reach of a cluster is. */
+    private boolean nearCritical(int n) {
+        if (spots(n) == neighbors(n)) {
+            return true;
+        }
+        int k = _geometry.adjacent(n, _adjacentBuffer);
+        for (int i = 0; i < k; i += 1) {
+            int m = _adjacentBuffer[i];
+            if (spots(m) == neighbors(m)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Add the almost overfilled squares of SIDE to _clusters. */
+    private void addClusters(Side side) {
+        criticalMask(side, _clusterBits);
+        for (int w = 0; w < _clusterBits.length; w += 1) {
+            for (long bits = _clusterBits[w]; bits != 0; bits &= bits - 1) {
+                _clusters.add((w << WORD_SHIFT)
+                              + Long.numberOfTrailingZeros(bits));
             }
         }
-        return numSpots;
     }
 
     /** Returns an integer array containing values useful for
@@ -268,31 +548,18 @@ class Board {
      * ret[i][2] is the number of squares such that
      * the squares are almost overfilled,
      * and ret[i][3] is the number of spots of SIDE
-     * that come from squares that are almost overfilled. */
+     * that come from squares that are almost overfilled.
+     * These are all maintained as squares change, so searches should
+     * use numOfSide, numPieces, numCritical, and criticalSpots, which
+     * do not allocate. */
     int[][] heuristicValues() {
         int[][] ret = new int[3][4];
-        boolean almostFilled = false;
-        int player;
-        for (int i = 0; i < size() * size(); i += 1) {
-            Square curr = get(i);
-            Side currSide = curr.getSide();
-            int currSpots = curr.getSpots();
-            if (neighbors(i) == currSpots) {
-                almostFilled = true;
-            }
-            if (currSide.equals(WHITE)) {
-                player = 0;
-            } else if (currSide.equals(RED)) {
-                player = 1;
-            } else {
-                player = 2;
-            }
-            ret[player][0] += 1;
-            ret[player][1] += currSpots;
-            if (almostFilled) {
-                ret[player][2] += 1;
-                ret[player][3] = currSpots;
-            }
+        for (Side side : Side.values()) {
+            int player = side.ordinal();
+            ret[player][0] = numOfSide(side);
+            ret[player][1] = numPieces(side);
+            ret[player][2] = numCritical(side);
+            ret[player][3] = criticalSpots(side);
         }
         return ret;
     }
@@ -314,25 +581,78 @@ class Board {
         addSpot(player, sqNum(r, c));
     }
 
-    /** Add a spot from PLAYER at square #N.  Assumes isLegal(PLAYER, N). */
+    /** Add a spot from PLAYER at square #N.  Assumes isLegal(PLAYER, N).
+     *  Once the board has warmed up (its undo history and work queue have
+     *  grown to the sizes the game needs), this allocates no storage. */
     void addSpot(Side player, int n) {
-        Side prev = whoseMove();
         simpleAdd(player, n, 1);
+        clearAvalanche();
         if (getWinner() == null) {
-            Integer N = n;
-            while (N != null && getWinner() == null) {
-                jump(N);
-                N = _workQueue.poll();
-            }
+            _queueHead = _queueTail = 0;
+            addQueue(n);
+            cascade();
             markUndo();
         }
-        Side curr = whoseMove();
-        if (prev.equals(curr) && getWinner() == null) {
-            String s = "testing";
-        }
         announce();
     }
 
+    /** Jump the squares in my work queue, and those they add to it, in
+     *  order, until the queue is empty or one side has won.  The entries
+     *  of the queue at any point form a wave, which is resolved by
+     *  my TiledCascade, if any, when it is large enough and does not end
+     *  the game, and otherwise one jump at a time. */
+    private void cascade() {
+        while (_queueHead != _queueTail && getWinner() == null) {
+            int waveEnd = _queueTail, jumps = _avalancheSize;
+            if (_cascade == null || waveEnd - _queueHead < _cascade.minWave()
+                || !resolveWave()) {
+                while (_queueHead != waveEnd && getWinner() == null) {
+                    jump(pollQueue());
+                }
+            }
+            if (_avalancheSize > jumps) {
+                _avalancheDuration += 1;
+            }
+        }
+    }
+
+    /** Resolve the wave formed by the entries of my work queue with my
+     *  TiledCascade, replacing them with the entries they add.  Returns
+     *  false, doing nothing, if the wave would end the game. */
+    private boolean resolveWave() {
+        int m = _queueTail - _queueHead;
+        if (_wave.length < m) {
+            _wave = new int[Math.max(m, 2 * _wave.length)];
+        }
+        for (int i = 0; i < m; i += 1) {
+            _wave[i] = _workQueue[(_queueHead + i) & (_workQueue.length - 1)];
+        }
+        if (!_cascade.resolve(this, _wave, m)) {
+            return false;
+        }
+        for (int k = 0; k < _cascade.numChanged(); k += 1) {
+            setCode(_cascade.changedSquare(k), _cascade.changedCode(k));
+        }
+        _queueHead = _queueTail;
+        for (int i = 0; i < m; i += 1) {
+            if (_cascade.fired(i)) {
+                recordJump(_wave[i]);
+                int k = _geometry.adjacent(_wave[i], _adjacentBuffer);
+                for (int j = 0; j < k; j += 1) {
+                    addQueue(_adjacentBuffer[j]);
+                }
+            }
+        }
+        return true;
+    }
+
+    /** Resolve large waves of cascades (see cascade) with CASCADE, or
+     *  one jump at a time if CASCADE is null.  Copies of me do not
+     *  share it. */
+    void setCascade(TiledCascade cascade) {
+        _cascade = cascade;
+    }
+
     /** Set the square at row R, column C to NUM spots (0 <= NUM), and give
      *  it color PLAYER if NUM > 0 (otherwise, white). */
     void set(int r, int c, int num, Side player) {
@@ -354,16 +674,36 @@ class Board {
             throw new GameException("Invalid square number at internalSet.");
         } else if (num < 0) {
             throw new GameException("Cannot have negative spots.");
+        } else if (num > MAX_SPOTS) {
+            throw new GameException("Too many spots at internalSet.");
         }
-        if (num > 0) {
-            updateNum(get(n), player);
-            _board[n / size()][n % size()] = Square.square(player, num);
-        } else {
-            updateNum(get(n), WHITE);
-            _board[row(n)][col(n)] = Square.square(WHITE, num);
+        setCode(n, Square.code(player, num));
+    }
+
+    /** Set square #N to packed code CODE, recording the change for
+     *  undo. */
+    private void setCode(int n, int code) {
+        int oldCode = code(n);
+        if (code != oldCode) {
+            if (_shared) {
+                unshare();
+            }
+            recordChange(n, oldCode);
+            updateCounts(n, oldCode, code);
+            putCode(n, code);
         }
     }
 
+    /** Restore square #N to packed code CODE without recording the
+     *  change in the undo history. */
+    private void restore(int n, int code) {
+        if (_shared) {
+            unshare();
+        }
+        updateCounts(n, code(n), code);
+        putCode(n, code);
+    }
+
     /** Undo the effects of one move (that is, one addSpot command).  One
      *  can only undo back to the last point at which the undo history
      *  was cleared (i.e. cannot undo before the beginning of the current
@@ -371,29 +711,23 @@ class Board {
      *  board using Board(Board) as that does not carry over the old history),
      *  or the construction of this Board (cannot undo before the game began).
      *  Can be done multiple times (ex: can undo 5 times if there are 6 states,
-     *  including the current one, in the history). */
+     *  including the current one, in the history).  Changes made since
+     *  the last marked position (e.g., by set) are undone first.
+     *  The history holds only the squares each move changed, so this
+     *  takes time proportional to the size of the undone move. */
     void undo() {
-        if (_history.size() == 0) {
+        if (_numMarks == 0) {
             throw new GameException("May have invalid history.");
-        } else if (_history.size() >= 2) {
-            Side beforeUndo = whoseMove();
-            Square[][] stateBeforeUndo = new Square[_size][_size];
-            stateBeforeUndo = _board;
-            int changeHist = _history.size() - 1;
-            Board state = _history.get(changeHist);
-            if (equals(state)) {
-                changeHist -= 1;
-                internalCopy(_history.get(changeHist));
-            } else {
-                internalCopy(state);
+        } else if (_numMarks >= 2) {
+            if (_numChanges == _undoMarks[_numMarks - 1]) {
+                _numMarks -= 1;
             }
-            ArrayList<Board> newHist = new ArrayList<Board>();
-            for (int i = 0; i <= changeHist; i += 1) {
-                newHist.add(_history.get(i));
-            }
-            _history = newHist;
-            if (beforeUndo.equals(whoseMove())) {
-                String s = "stop here";
+            int mark = _undoMarks[_numMarks - 1];
+            unjournal(mark);
+            while (_numChanges > mark) {
+                _numChanges -= 1;
+                restore(_changedSquares[_numChanges],
+                        _changedCodes[_numChanges]);
             }
         }
     }
@@ -402,70 +736,223 @@ class Board {
      * In other words, marks the first move after undoing to a point.
      * Allows for the program to know when to undo an undo. */
     private void markUndo() {
-        _history.add(new Board(this));
+        if (_numMarks > 0) {
+            unjournal(_undoMarks[_numMarks - 1]);
+        }
+        if (_numMarks == _undoMarks.length) {
+            _undoMarks = Arrays.copyOf(_undoMarks, 2 * _numMarks);
+        }
+        _undoMarks[_numMarks] = _numChanges;
+        _numMarks += 1;
+    }
+
+    /** Clear the undo history, making the current position the only
+     *  marked one. */
+    private void clearUndo() {
+        if (_changedSquares == null) {
+            _changedSquares = new int[INITIAL_UNDO_CAPACITY];
+            _changedCodes = new byte[INITIAL_UNDO_CAPACITY];
+            _undoMarks = new int[INITIAL_UNDO_CAPACITY];
+        }
+        if (_numMarks > 0) {
+            unjournal(_undoMarks[_numMarks - 1]);
+        }
+        _numChanges = _numMarks = 0;
+        markUndo();
+    }
+
+    /** Clear the _journaled bits of the squares changed by the recorded
+     *  changes from the FROM-th on. */
+    private void unjournal(int from) {
+        for (int k = from; k < _numChanges; k += 1) {
+            int n = _changedSquares[k];
+            _journaled.remove(n);
+        }
+    }
+
+    /** Record in the undo history that square #N, whose packed code is
+     *  CODE, is about to change. */
+    private void recordChange(int n, int code) {
+        if (!_journaled.add(n)) {
+            return;
+        }
+        if (_numChanges == _changedSquares.length) {
+            trimUndo();
+        }
+        _changedSquares[_numChanges] = n;
+        _changedCodes[_numChanges] = (byte) code;
+        _numChanges += 1;
+    }
+
+    /** Make room for more changes in the undo history.  Once the history
+     *  holds MAX_UNDO_CHANGES changes, this discards the oldest marked
+     *  positions (and so the ability to undo back to them) rather than
+     *  growing, as long as that frees at least half the history.  The
+     *  changes made since the last marked position are never discarded. */
+    private void trimUndo() {
+        if (_numChanges >= MAX_UNDO_CHANGES) {
+            int k;
+            for (k = 1; k < _numMarks; k += 1) {
+                if (_undoMarks[k] >= _numChanges / 2) {
+                    break;
+                }
+            }
+            if (k < _numMarks) {
+                int drop = _undoMarks[k];
+                _numChanges -= drop;
+                System.arraycopy(_changedSquares, drop, _changedSquares, 0,
+                                 _numChanges);
+                System.arraycopy(_changedCodes, drop, _changedCodes, 0,
+                                 _numChanges);
+                _numMarks -= k;
+                for (int i = 0; i < _numMarks; i += 1) {
+                    _undoMarks[i] = _undoMarks[i + k] - drop;
+                }
+                return;
+            }
+        }
+        _changedSquares = Arrays.copyOf(_changedSquares, 2 * _numChanges);
+        _changedCodes = Arrays.copyOf(_changedCodes, 2 * _numChanges);
     }
 
     /** Add DELTASPOTS spots of side PLAYER to row R, column C,
      *  updating counts of numbers of squares of each color. */
     private void simpleAdd(Side player, int r, int c, int deltaSpots) {
-        internalSet(r, c, deltaSpots + get(r, c).getSpots(), player);
+        internalSet(r, c, deltaSpots + spots(sqNum(r, c)), player);
     }
 
     /** Add DELTASPOTS spots of color PLAYER to square #N,
      *  updating counts of numbers of squares of each color. */
     private void simpleAdd(Side player, int n, int deltaSpots) {
-        internalSet(n, deltaSpots + get(n).getSpots(), player);
+        internalSet(n, deltaSpots + spots(n), player);
     }
 
-    /** Used in jump to keep track of squares needing processing.  Allocated
-     *  here to cut down on allocations. */
-    private final ArrayDeque<Integer> _workQueue = new ArrayDeque<>();
+    /** Add square #N to the end of the work queue. */
+    private void addQueue(int n) {
+        if (_queueTail - _queueHead == _workQueue.length) {
+            int[] queue = new int[2 * _workQueue.length];
+            for (int i = _queueHead; i < _queueTail; i += 1) {
+                queue[i & (queue.length - 1)] =
+                    _workQueue[i & (_workQueue.length - 1)];
+            }
+            _workQueue = queue;
+        }
+        _workQueue[_queueTail & (_workQueue.length - 1)] = n;
+        _queueTail += 1;
+    }
+
+    /** Remove and return the square number at the front of the work
+     *  queue, or return -1 if the queue is empty. */
+    private int pollQueue() {
+        if (_queueHead == _queueTail) {
+            return -1;
+        }
+        int n = _workQueue[_queueHead & (_workQueue.length - 1)];
+        _queueHead += 1;
+        return n;
+    }
+
+    /** Used in jump to keep track of squares needing processing: a ring
+     *  buffer holding the square numbers at positions _queueHead through
+     *  _queueTail - 1 (modulo its length, which is a power of 2).
+     *  Allocated here to cut down on allocations. */
+    private int[] _workQueue = new int[INITIAL_QUEUE_CAPACITY];
+
+    /** Holds the entries of a wave resolved by _cascade. */
+    private int[] _wave = new int[0];
+
+    /** Resolves large waves of cascades, or null if none. */
+    private TiledCascade _cascade;
+
+    /** Number of jumps, of waves with jumps, and of distinct squares
+     *  jumped in the last avalanche (see avalancheSize). */
+    private int _avalancheSize, _avalancheDuration, _avalancheArea;
+
+    /** The squares jumped in the last avalanche, or null if not tracked.
+     *  They are also _jumpedSquares[0 .. _avalancheArea - 1]. */
+    private SparseBits _jumped;
+    /** See _jumped. */
+    private int[] _jumpedSquares = new int[0];
+
+    /** Holds the neighbors of the square being jumped. */
+    private final int[] _adjacentBuffer = new int[Geometry.MAX_NEIGHBORS];
+
+    /** Indices of the front of _workQueue and of the position after its
+     *  end. */
+    private int _queueHead, _queueTail;
 
     /** Do all jumping on this board, assuming that initially, S is the only
-     *  square that might be over-full. */
+     *  square that might be over-full.  Since only squares of RED or BLUE
+     *  jump, the squares changed are set to their packed codes directly,
+     *  rather than through internalSet. */
     private void jump(int S) {
         if (!exists(S)) {
             throw new GameException("Invalid square at jump.");
         }
-        if (get(S).getSpots() > neighbors(S)) {
-            int row = S / size();
-            int col = S % size();
-            Side player = get(S).getSide();
-            int[] positions;
-            int left = S - 1;
-            int right = S + 1;
-            int top = S - size();
-            int bottom = S + size();
-            if (row == 0) {
-                if (col == 0) {
-                    positions = new int[] {right, bottom};
-                } else if (col == size() - 1) {
-                    positions = new int[] {left, bottom};
-                } else {
-                    positions = new int[] {left, right, bottom};
-                }
-            } else if (row == size() - 1) {
-                if (col == 0) {
-                    positions = new int[] {top, right};
-                } else if (col == size() - 1) {
-                    positions = new int[] {top, left};
-                } else {
-                    positions = new int[] {top, left, right};
-                }
-            } else {
-                if (col == 0) {
-                    positions = new int[] {top, right, bottom};
-                } else if (col == size() - 1) {
-                    positions = new int[] {top, left, bottom};
-                } else {
-                    positions = new int[] {top, left, right, bottom};
-                }
+        int code = code(S), spots = Square.spotsOf(code);
+        if (spots <= Geometry.MIN_NEIGHBORS) {
+            return;
+        }
+        int[] adjacent = _adjacentBuffer;
+        int k = _geometry.adjacent(S, adjacent);
+        if (spots > k) {
+            int side = code & Square.SIDE_MASK;
+            recordJump(S);
+            setCode(S, (1 << Square.SPOTS_SHIFT) | side);
+            for (int i = 0; i < k; i += 1) {
+                int n = adjacent[i];
+                addQueue(n);
+                setCode(n, ((spots(n) + 1) << Square.SPOTS_SHIFT) | side);
+            }
+        }
+    }
+
+    /** Return the number of jumps caused by the last addSpot: the size
+     *  of its avalanche, in the terms of sandpile models. */
+    int avalancheSize() {
+        return _avalancheSize;
+    }
+
+    /** Return the number of waves of the cascade (see cascade) caused by
+     *  the last addSpot in which some square jumped. */
+    int avalancheDuration() {
+        return _avalancheDuration;
+    }
+
+    /** Return the number of distinct squares that jumped after the last
+     *  addSpot, if I am tracking them (see trackAvalancheArea), and
+     *  otherwise 0. */
+    int avalancheArea() {
+        return _avalancheArea;
+    }
+
+    /** Keep track of avalancheArea() iff TRACK. */
+    void trackAvalancheArea(boolean track) {
+        clearAvalanche();
+        _jumped = track ? new SparseBits() : null;
+    }
+
+    /** Clear the record of the last avalanche. */
+    private void clearAvalanche() {
+        _avalancheSize = _avalancheDuration = 0;
+        if (_jumped != null) {
+            for (int k = 0; k < _avalancheArea; k += 1) {
+                _jumped.remove(_jumpedSquares[k]);
             }
-            internalSet(S, 1, player);
-            for (int pos: positions) {
-                _workQueue.add(pos);
-                simpleAdd(player, pos, 1);
+        }
+        _avalancheArea = 0;
+    }
+
+    /** Record that square #N jumps in the current avalanche. */
+    private void recordJump(int n) {
+        _avalancheSize += 1;
+        if (_jumped != null && _jumped.add(n)) {
+            if (_avalancheArea == _jumpedSquares.length) {
+                _jumpedSquares = Arrays.copyOf(_jumpedSquares,
+                                               2 * _avalancheArea + 1);
             }
+            _jumpedSquares[_avalancheArea] = n;
+            _avalancheArea += 1;
         }
     }
 
@@ -473,25 +960,29 @@ class Board {
     @Override
     public String toString() {
         Formatter out = new Formatter();
+        dump(out);
+        String ret = out.toString();
+        out.close();
+        return ret;
+    }
+
+    /** Write my contents to OUT in the format of toString, a row at a
+     *  time, so that large boards need not be converted to a String
+     *  first. */
+    void dump(Formatter out) {
         out.format("===%n");
-        for (int index = 0; index < size() * size(); index += 1) {
-            if (index % size() == 0) {
-                out.format("   ");
-            }
-            Square curr = get(index);
-            char side = curr.getSide().toString().charAt(0);
-            if (side == 'w') {
-                side = '-';
-            }
-            out.format(" %1$d%2$c", curr.getSpots(), side);
-            if (index % size() == size() - 1) {
-                out.format("%n");
+        StringBuilder row = new StringBuilder();
+        for (int r = 1; r <= size(); r += 1) {
+            row.setLength(0);
+            row.append("   ");
+            for (int n = sqNum(r, 1); n <= sqNum(r, size()); n += 1) {
+                Square curr = get(n);
+                row.append(' ').append(curr.getSpots())
+                    .append(DUMP_CHARS[curr.getSide().ordinal()]);
             }
+            out.format("%s%n", row);
         }
         out.format("===");
-        String ret = out.toString();
-        out.close();
-        return ret;
     }
 
     /** Returns an external rendition of me, suitable for human-readable
@@ -512,36 +1003,61 @@ class Board {
 
     /** Returns the number of neighbors of the square at row R, column C. */
     int neighbors(int r, int c) {
-        int size = size();
-        int n;
-        n = 0;
-        if (r > 1) {
-            n += 1;
-        }
-        if (c > 1) {
-            n += 1;
-        }
-        if (r < size) {
-            n += 1;
-        }
-        if (c < size) {
-            n += 1;
-        }
-        return n;
+        return neighbors(sqNum(r, c));
     }
 
     /** Returns the number of neighbors of square #N. */
     int neighbors(int n) {
-        return neighbors(row(n), col(n));
+        return geometry().neighbors(n);
+    }
+
+    /** Updates the numbers of tiles, spots, and almost overfilled squares
+     * and their spots of each color on the board, and my Zobrist key, if
+     * square #N changes from packed code OLDCODE to packed code NEWCODE.
+     * Should be called only when changing a square. */
+    private void updateCounts(int n, int oldCode, int newCode) {
+        _zobrist ^= zobristKey(n, oldCode) ^ zobristKey(n, newCode);
+        int oldSpots = Square.spotsOf(oldCode),
+            newSpots = Square.spotsOf(newCode);
+        _numSpots += newSpots - oldSpots;
+        int oldSide = oldCode & Square.SIDE_MASK,
+            newSide = newCode & Square.SIDE_MASK;
+        _sideSpots[oldSide] -= oldSpots;
+        _sideSpots[newSide] += newSpots;
+        if (_tiles == null) {
+            int w = n >>> WORD_SHIFT;
+            long bit = 1L << n;
+            _sideBits[oldSide][w] ^= bit;
+            _sideBits[newSide][w] ^= bit;
+            for (int p = 0, change = oldSpots ^ newSpots; change != 0;
+                 p += 1, change >>>= 1) {
+                if ((change & 1) != 0) {
+                    _spotBits[p][w] ^= bit;
+                }
+            }
+        }
+        int neighbors = _geometry.neighbors(n);
+        if (oldSpots == neighbors) {
+            _criticalSquares[oldSide] -= 1;
+            _criticalSpots[oldSide] -= oldSpots;
+            _clustersValid = false;
+        }
+        if (newSpots == neighbors) {
+            _criticalSquares[newSide] += 1;
+            _criticalSpots[newSide] += newSpots;
+            if (_clustersValid) {
+                _clusters.add(n);
+            }
+        }
+        updateNum(Square.sideOf(oldCode), Square.sideOf(newCode));
     }
 
     /** Updates the number of tiles of each color on the board
-     * if the square is of type OLD and becomes side CURR.
+     * if the square is of side OLDSIDE and becomes side CURR.
      * Should be called only in internalSet as this method
      * does not check whether the current square is already a
      * given color. */
-    private void updateNum(Square old, Side curr) {
-        Side oldSide = old.getSide();
+    private void updateNum(Side oldSide, Side curr) {
         if (!oldSide.equals(curr)) {
             if (curr.equals(RED)) {
                 _numRed += 1;
@@ -569,7 +1085,7 @@ class Board {
             return false;
         } else {
             Board B = (Board) obj;
-            if (B.size() != size()) {
+            if (B.size() != size() || B.zobrist() != zobrist()) {
                 return false;
             } else {
                 for (int i = 0; i < size() * size(); i += 1) {
@@ -588,7 +1104,32 @@ class Board {
 
     @Override
     public int hashCode() {
-        return numPieces();
+        return Long.hashCode(zobrist()) * 31 + size();
+    }
+
+    /** Returns my Zobrist key: the exclusive or of zobristKey(N, C) over
+     *  all squares #N, where C is the packed code of square #N.  Equal
+     *  positions of the same size have equal keys; distinct positions
+     *  almost certainly have distinct ones.  Maintained incrementally as
+     *  squares change, so this takes constant time. */
+    long zobrist() {
+        return _zobrist;
+    }
+
+    /** Returns the Zobrist key for square #N holding packed code CODE.
+     *  The key of a square in its initial state is 0, so that all
+     *  initial boards have key 0. */
+    static long zobristKey(int n, int code) {
+        code &= BYTE_MASK;
+        if (n < ZOBRIST_SQUARES) {
+            return ZOBRIST_KEYS[(n << Byte.SIZE) + code];
+        } else if (code == Square.INITIAL_CODE) {
+            return 0;
+        }
+        long z = ((long) n << Byte.SIZE) + code + ZOBRIST_SEED;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
     }
 
     /** Set my notifier to NOTIFY. */
@@ -604,19 +1145,48 @@ class Board {
 
     /** Returns all the squares in a given board that would
      * to which it is legal for the player to add a spot.
+     * The squares do not record their positions; use legalMoves to
+     * generate moves.
      * @param player The player that is being checked. */
     public ArrayList<Square> getLegalSides(Side player) {
         ArrayList<Square> squares = new ArrayList<Square>();
-        for (int i = 0; i < size() * size(); i += 1) {
-            Square curr = get(i);
-            Side side = curr.getSide();
+        for (int i = 0; i < _size * _size; i += 1) {
+            Side side = side(i);
             if (side.equals(player) || side.equals(WHITE)) {
-                squares.add(curr);
+                squares.add(get(i));
             }
         }
         return squares;
     }
 
+    /** DUMP_CHARS[S.ordinal()] denotes Side S in dumps. */
+    private static final char[] DUMP_CHARS = { '-', 'r', 'b' };
+
+    /** Mask for converting bytes to their unsigned values. */
+    private static final int BYTE_MASK = (1 << Byte.SIZE) - 1;
+
+    /** Number of squares whose Zobrist keys are tabulated.  The keys of
+     *  the other squares (which occur only on large boards) are computed
+     *  by a mixing function. */
+    private static final int ZOBRIST_SQUARES = 100;
+
+    /** Offset of the values mixed to compute untabulated Zobrist keys. */
+    private static final long ZOBRIST_SEED = 0x61C8864680B583EBL;
+
+    /** Random keys for computing Zobrist keys: the key for square #N with
+     *  packed code C is at index N * 2**Byte.SIZE + C. */
+    private static final long[] ZOBRIST_KEYS =
+        new long[ZOBRIST_SQUARES << Byte.SIZE];
+
+    static {
+        Random keys = new Random(0x61L);
+        for (int i = 0; i < ZOBRIST_KEYS.length; i += 1) {
+            if ((i & BYTE_MASK) != Square.INITIAL_CODE) {
+                ZOBRIST_KEYS[i] = keys.nextLong();
+            }
+        }
+    }
+
     /** A notifier that does nothing. */
     private static final Consumer<Board> NOP = (s) -> { };
 
@@ -626,18 +1196,120 @@ class Board {
     /** Use _notifier.accept(B) to announce changes to this board. */
     private Consumer<Board> _notifier;
 
-    /** The current board. */
-    private Square[][] _board;
+    /** The contents of the board: the packed code (see Square.code) of
+     *  square #N is _cells[N].  Null on boards of at least TILED_SIZE
+     *  squares on a side, which keep their contents in _tiles instead. */
+    private byte[] _cells;
+
+    /** The contents of a board of at least TILED_SIZE squares on a side,
+     *  or null for smaller boards. */
+    private Tiles _tiles;
+
+    /** True iff my squares or masks may be shared with another Board (see
+     *  share). */
+    private boolean _shared;
+
+    /** An immutable copy of my current contents, or null if none has been
+     *  taken since I last changed. */
+    private ConstantBoard _snapshot;
+
+    /** The clusters of my almost overfilled squares (see winningMove), or
+     *  null if not yet needed since my size last changed. */
+    private CriticalClusters _clusters;
+
+    /** True iff _clusters holds exactly my almost overfilled squares. */
+    private boolean _clustersValid;
+
+    /** Masks used by winningMove: of the almost overfilled squares of a
+     *  side, and of the squares a winning move must capture. */
+    private long[] _clusterBits, _targetBits;
+
+    /** The largest board size for which winningMove keeps clusters.  Their
+     *  reaches take storage proportional to the square of the number of
+     *  squares. */
+    static final int MAX_CLUSTER_SIZE = 32;
+
+    /** The smallest board size whose squares are kept in Tiles. */
+    static final int TILED_SIZE = 256;
 
     /** The size of the board. In other words, the length/width. */
     private int _size;
 
-    /** The history of the game. */
-    private ArrayList<Board> _history;
+    /** The layout of the squares of this board. */
+    private Geometry _geometry;
+
+    /** Initial capacity of the work queue.  Must be a power of 2. */
+    private static final int INITIAL_QUEUE_CAPACITY = 64;
+
+    /** Initial capacity of the undo history arrays. */
+    private static final int INITIAL_UNDO_CAPACITY = 64;
+
+    /** Number of recorded changes beyond which the undo history discards
+     *  its oldest moves. */
+    private static final int MAX_UNDO_CHANGES = 1 << 20;
+
+    /** The undo history: _changedSquares[k] is the number of the square
+     *  changed by the k-th recorded change, in order of change, and
+     *  _changedCodes[k] is the packed code it held before that change. */
+    private int[] _changedSquares;
+
+    /** See _changedSquares. */
+    private byte[] _changedCodes;
+
+    /** The squares recorded in the undo history since its last mark.
+     *  Only the first change to a square between marks needs to be
+     *  recorded, which bounds the history of a move by the number of
+     *  squares, however long its cascade. */
+    private final SparseBits _journaled = new SparseBits();
+
+    /** The number of valid entries in _changedSquares and _changedCodes. */
+    private int _numChanges;
+
+    /** _undoMarks[k] is the value of _numChanges at the k-th position
+     *  recorded by markUndo, oldest first. */
+    private int[] _undoMarks;
+
+    /** The number of valid entries in _undoMarks. */
+    private int _numMarks;
 
     /** The number of red tiles in the game. */
     private int _numRed;
 
     /** The number of blue tiles in the game. */
     private int _numBlue;
+
+    /** The total number of spots on the board. */
+    private int _numSpots;
+
+    /** My Zobrist key (see zobrist()). */
+    private long _zobrist;
+
+    /** _sideSpots[S.ordinal()] is the number of spots on squares of
+     *  side S. */
+    private final int[] _sideSpots = new int[Side.values().length];
+
+    /** _criticalSquares[S.ordinal()] is the number of squares of side S
+     *  that are almost overfilled, and _criticalSpots[S.ordinal()] is the
+     *  number of spots on them (see numCritical). */
+    private final int[] _criticalSquares = new int[Side.values().length],
+        _criticalSpots = new int[Side.values().length];
+
+    /** _sideBits[S.ordinal()] is the mask of squares of side S. */
+    private final long[][] _sideBits = new long[Side.values().length][];
+
+    /** _spotBits[P] is the mask of squares whose number of spots has bit
+     *  P set. */
+    private final long[][] _spotBits = new long[SPOT_PLANES][];
+
+    /** Number of bits in the spot counts kept in _spotBits, enough for
+     *  any Square. */
+    private static final int SPOT_PLANES = 4;
+
+    /** The largest number of spots a square may hold: the most that
+     *  _spotBits can record. */
+    private static final int MAX_SPOTS = (1 << SPOT_PLANES) - 1;
+
+    /** Shift converting a square number to the index of its word in a
+     *  mask. */
+    private static final int WORD_SHIFT = 6;
 }
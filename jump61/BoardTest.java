@@ -2,6 +2,10 @@ package jump61;
 
 import static jump61.Side.*;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -219,4 +223,424 @@ public class BoardTest {
         assertTrue(B.getWinner().equals(BLUE));
         assertEquals(3, B.size());
     }
+
+    @Test
+    public void testUndoCascade() {
+        Board B = new Board(3);
+        B.set(1, 1, 2, RED);
+        B.set(1, 2, 3, RED);
+        B.set(2, 1, 3, BLUE);
+        B.set(2, 2, 3, BLUE);
+        B = new Board(B);
+        String before = B.toString();
+        B.addSpot(RED, 1, 1);
+        checkBoard("#1", B, 1, 1, 1, RED, 1, 2, 3, RED, 1, 3, 2, RED,
+                2, 1, 3, RED, 2, 2, 1, RED, 2, 3, 2, RED,
+                3, 1, 2, RED, 3, 2, 2, RED);
+        B.undo();
+        assertEquals("cascade not undone", before, B.toString());
+        assertEquals(2, B.numOfSide(BLUE));
+        assertEquals(2, B.numOfSide(RED));
+        B.addSpot(RED, 1, 1);
+        B.set(3, 3, 2, BLUE);
+        B.undo();
+        checkBoard("#1U", B, 1, 1, 1, RED, 1, 2, 3, RED, 1, 3, 2, RED,
+                2, 1, 3, RED, 2, 2, 1, RED, 2, 3, 2, RED,
+                3, 1, 2, RED, 3, 2, 2, RED);
+    }
+
+    @Test
+    public void testSpotCounts() {
+        Board B = new Board(3);
+        assertEquals(9, B.numPieces(WHITE));
+        B.addSpot(RED, 1, 1);
+        B.addSpot(BLUE, 2, 2);
+        B.addSpot(RED, 1, 1);
+        assertEquals(12, B.numPieces());
+        assertEquals(5, B.numPieces(RED));
+        assertEquals(2, B.numPieces(BLUE));
+        assertEquals(5, B.numPieces(WHITE));
+        assertEquals(BLUE, B.whoseMove());
+        B.undo();
+        assertEquals(11, B.numPieces());
+        assertEquals(2, B.numPieces(RED));
+        assertEquals(RED, B.whoseMove());
+    }
+
+    @Test
+    public void testLargeBoard() {
+        final int N = 60;
+        Board B = new Board(N);
+        assertEquals(4, B.neighbors(N + 2));
+        assertEquals(3, B.neighbors(N));
+        assertEquals(2, B.neighbors(N * N - 1));
+        for (int n = 0; n < N * N; n += 1) {
+            B.set(B.row(n), B.col(n), B.neighbors(n), n % 7 == 0 ? BLUE : RED);
+        }
+        B = new Board(B);
+        Board start = new Board(B);
+        Side player = B.whoseMove();
+        int n;
+        for (n = 0; !B.isLegal(player, n); n += 1) {
+            continue;
+        }
+        B.addSpot(player, n);
+        assertEquals(player, B.getWinner());
+        B.undo();
+        assertEquals(start, B);
+        String dump = B.toString();
+        assertEquals(N + 2, dump.split("\\R").length);
+        assertTrue(dump.startsWith("===" + NL + "    " + B.get(0).getSpots()));
+    }
+
+    @Test
+    public void testTiledCascade() {
+        TiledCascade cascade = new TiledCascade(3, 4, 1);
+        for (int N = 5; N <= 41; N += 9) {
+            Random random = new Random(N);
+            Board B = new Board(N);
+            for (int n = 0; n < N * N; n += 1) {
+                int spots = B.neighbors(n) - random.nextInt(2);
+                B.set(B.row(n), B.col(n), spots,
+                      random.nextInt(3) == 0 ? BLUE : RED);
+            }
+            B = new Board(B);
+            Board tiled = new Board(B);
+            tiled.setCascade(cascade);
+            int moves;
+            for (moves = 0; moves < 20 && B.getWinner() == null;
+                 moves += 1) {
+                Side player = B.whoseMove();
+                int n = random.nextInt(N * N);
+                while (!B.isLegal(player, n)) {
+                    n = (n + 1) % (N * N);
+                }
+                B.addSpot(player, n);
+                tiled.addSpot(player, n);
+                assertEquals(B, tiled);
+                assertEquals(B.getWinner(), tiled.getWinner());
+            }
+            for (; moves > 0; moves -= 1) {
+                B.undo();
+                tiled.undo();
+                assertEquals(B, tiled);
+            }
+        }
+    }
+
+    @Test
+    public void testAvalanches() {
+        Board B = new Board(3);
+        B.set(1, 1, 2, RED);
+        B.set(1, 2, 3, RED);
+        B.set(3, 3, 1, BLUE);
+        B = new Board(B);
+        B.trackAvalancheArea(true);
+        B.addSpot(RED, 1, 1);
+        assertEquals(2, B.avalancheSize());
+        assertEquals(2, B.avalancheDuration());
+        assertEquals(2, B.avalancheArea());
+        B.addSpot(BLUE, 3, 3);
+        assertEquals(0, B.avalancheSize());
+        assertEquals(0, B.avalancheDuration());
+        assertEquals(0, B.avalancheArea());
+        B.addSpot(RED, 1, 1);
+        assertEquals(1, B.avalancheSize());
+        assertEquals(1, B.avalancheArea());
+        assertEquals(1, Sandpile.bin(1));
+        assertEquals(3, Sandpile.bin(7));
+        assertEquals(4, Sandpile.bin(8));
+    }
+
+    /** A sandpile on a small board keeps toppling after drops that win. */
+    @Test
+    public void testSandpileWins() throws IOException {
+        for (int N = 2; N <= 3; N += 1) {
+            Board B = new Board(N);
+            Sandpile sandpile = new Sandpile(B, N - 1);
+            sandpile.run(100000, null);
+            assertEquals(100000, sandpile.drops());
+            assertTrue(sandpile.wins() > 0);
+            assertTrue(sandpile.jumps() > 0);
+            assertNull(B.getWinner());
+            for (int n = 0; n < N * N; n += 1) {
+                assertTrue("over-full square #" + n,
+                           B.get(n).getSpots() <= B.neighbors(n));
+            }
+        }
+    }
+
+    /** A cascade through a diamond of critical squares, started at its
+     *  tip, fills the work queue of a new board in the middle of a wave
+     *  long after the start of the cascade. */
+    @Test
+    public void testQueueGrowsInWave() {
+        final int N = 17, R = N / 2 + 1;
+        Board B = new Board(N);
+        for (int n = 0; n < N * N; n += 1) {
+            if (Math.abs(B.row(n) - R) + Math.abs(B.col(n) - R) < R) {
+                B.set(B.row(n), B.col(n), B.neighbors(n), RED);
+            }
+        }
+        B = new Board(B);
+        Board original = new Board(B);
+        B.addSpot(RED, 1, R);
+        assertEquals(2 * R * R - 2 * R + 1, B.avalancheSize());
+        for (int n = 0; n < N * N; n += 1) {
+            assertTrue("over-full square #" + n,
+                       B.get(n).getSpots() <= B.neighbors(n));
+        }
+        B.undo();
+        assertEquals(original, B);
+    }
+
+    @Test
+    public void testTiledBoard() {
+        final int N = Board.TILED_SIZE + 3;
+        Board B = new Board(N);
+        assertEquals(0, B.tiles().allocatedTiles());
+        for (int r = 1; r <= 3; r += 1) {
+            for (int c = 1; c <= N; c += 1) {
+                B.set(r, c, B.neighbors(r, c), c % 5 == 0 ? BLUE : RED);
+            }
+        }
+        B.set(N, N, 2, BLUE);
+        B = new Board(B);
+        Board start = new Board(B);
+        int tiles = B.tiles().allocatedTiles();
+        assertEquals(N / Tiles.TILE_SIZE + 2, tiles);
+        Side player = B.whoseMove();
+        int n;
+        for (n = 0; !B.isLegal(player, n); n += 1) {
+            continue;
+        }
+        B.addSpot(player, n);
+        assertTrue(B.avalancheSize() > N);
+        Board copy = new Board(B);
+        assertEquals(B, copy);
+        assertEquals(B.numOfSide(RED), copy.numOfSide(RED));
+        assertEquals(B.numPieces(BLUE), copy.numPieces(BLUE));
+        assertEquals(B.numCritical(RED), copy.numCritical(RED));
+        assertEquals(B.criticalSpots(BLUE), copy.criticalSpots(BLUE));
+        checkMasks(B);
+        B.undo();
+        assertEquals(start, B);
+        assertEquals(tiles, B.tiles().allocatedTiles());
+        assertFalse(copy.equals(B));
+        assertEquals(copy, new Board(copy.readonlyBoard()));
+        B.set(N, N, 1, WHITE);
+        assertEquals(tiles - 1, B.tiles().allocatedTiles());
+        assertEquals(2, start.get(N * N - 1).getSpots());
+    }
+
+    @Test
+    public void testSnapshots() {
+        for (int N : new int[] { 6, Board.TILED_SIZE }) {
+            Board B = new Board(N);
+            B.set(1, 1, 2, RED);
+            B.set(2, 2, 3, BLUE);
+            Board before = B.snapshot();
+            assertSame(before, B.snapshot());
+            String dump = before.toString();
+            Board copy = new Board(B);
+            B.addSpot(RED, 1, 1);
+            assertFalse(before == B.snapshot());
+            assertEquals(dump, before.toString());
+            assertEquals(dump, copy.toString());
+            assertEquals(1, before.get(1, 2).getSpots());
+            assertEquals(2, B.get(1, 2).getSpots());
+            before.addSpot(RED, 1, 1);
+            assertEquals(dump, before.toString());
+            copy.addSpot(BLUE, 2, 2);
+            assertEquals(dump, before.toString());
+            assertEquals(3, B.get(2, 2).getSpots());
+            assertEquals(4, copy.get(2, 2).getSpots());
+            assertEquals(copy, new Board(copy).snapshot());
+            checkMasks(new Board(before));
+        }
+    }
+
+    @Test
+    public void testCriticalCounts() {
+        Board B = new Board(3);
+        B.addSpot(RED, 1, 1);
+        assertEquals(1, B.numCritical(RED));
+        assertEquals(2, B.criticalSpots(RED));
+        B.addSpot(BLUE, 2, 2);
+        B.addSpot(RED, 1, 2);
+        B.addSpot(BLUE, 2, 2);
+        assertEquals(1, B.numCritical(RED));
+        assertEquals(0, B.numCritical(BLUE));
+        B.addSpot(RED, 1, 2);
+        assertEquals(2, B.numCritical(RED));
+        assertEquals(5, B.criticalSpots(RED));
+        int[][] values = B.heuristicValues();
+        assertEquals(2, values[RED.ordinal()][0]);
+        assertEquals(5, values[RED.ordinal()][1]);
+        assertEquals(2, values[RED.ordinal()][2]);
+        assertEquals(5, values[RED.ordinal()][3]);
+        assertEquals(3, values[BLUE.ordinal()][1]);
+        assertEquals(0, values[BLUE.ordinal()][2]);
+        assertEquals(0, values[BLUE.ordinal()][3]);
+        B.undo();
+        assertEquals(1, B.numCritical(RED));
+        assertEquals(2, B.criticalSpots(RED));
+        assertEquals(1, new Board(B).numCritical(RED));
+    }
+
+    @Test
+    public void testZobrist() {
+        Board B = new Board(4);
+        assertEquals(0, B.zobrist());
+        B.addSpot(RED, 1, 1);
+        B.addSpot(BLUE, 4, 4);
+        B.addSpot(RED, 2, 2);
+        long key = B.zobrist();
+        assertNotEquals(0, key);
+        Board C = new Board(4);
+        C.addSpot(RED, 2, 2);
+        C.addSpot(BLUE, 4, 4);
+        C.addSpot(RED, 1, 1);
+        assertEquals(key, C.zobrist());
+        assertEquals(B, C);
+        assertEquals(B.hashCode(), C.hashCode());
+        assertEquals(key, new Board(B.readonlyBoard()).zobrist());
+        B.addSpot(BLUE, 4, 4);
+        assertNotEquals(key, B.zobrist());
+        assertNotEquals(B, C);
+        B.undo();
+        assertEquals(key, B.zobrist());
+        B.undo();
+        B.undo();
+        B.undo();
+        assertEquals(0, B.zobrist());
+    }
+
+    @Test
+    public void testMasks() {
+        Board B = new Board(10);
+        assertEquals(2, B.maskWords());
+        assertFalse(B.isLegal(RED, 2, 0));
+        assertFalse(B.isLegal(RED, 1, 11));
+        checkMasks(B);
+        for (int k = 0; k < 150 && B.getWinner() == null; k += 1) {
+            Side player = B.whoseMove();
+            int n = (k * 37) % 100;
+            while (!B.isLegal(player, n)) {
+                n = (n + 1) % 100;
+            }
+            B.addSpot(player, n);
+            checkMasks(B);
+        }
+        for (int k = 0; k < 40; k += 1) {
+            B.undo();
+        }
+        checkMasks(B);
+        checkMasks(new Board(B));
+    }
+
+    /** Checks that the legal moves and the legal-move and critical masks
+     *  of B agree with isLegal and with the contents of its squares. */
+    private void checkMasks(Board B) {
+        long[] mask = new long[B.maskWords()];
+        int[] moves = new int[B.size() * B.size()];
+        for (Side side : Side.values()) {
+            int numMoves = B.legalMoves(side, moves);
+            int k;
+            k = 0;
+            for (int n = 0; n < B.size() * B.size(); n += 1) {
+                if (B.isLegal(side, n)) {
+                    assertEquals(n, moves[k]);
+                    k += 1;
+                }
+            }
+            assertEquals(k, numMoves);
+            B.legalMask(side, mask);
+            for (int n = 0; n < B.size() * B.size(); n += 1) {
+                assertEquals(B.isLegal(side, n),
+                             (mask[n / 64] & (1L << n)) != 0);
+            }
+            B.criticalMask(side, mask);
+            for (int n = 0; n < B.size() * B.size(); n += 1) {
+                Square sq = B.get(n);
+                assertEquals(sq.getSide() == side
+                             && sq.getSpots() == B.neighbors(n),
+                             (mask[n / 64] & (1L << n)) != 0);
+            }
+        }
+    }
+
+    /** Checks, over random games with random undos, that every move
+     *  winningMove finds wins at once, and that the clusters it keeps as
+     *  squares change agree with those of a fresh copy. */
+    @Test
+    public void testWinningMove() {
+        Random random = new Random(61);
+        int found;
+        found = 0;
+        for (int game = 0; game < 200; game += 1) {
+            int N = 2 + game % 5;
+            Board B = new Board(N);
+            int[] moves = new int[N * N];
+            int depth;
+            depth = 0;
+            while (B.getWinner() == null) {
+                Side player = B.whoseMove();
+                int win = B.winningMove(player);
+                assertEquals(new Board(B).winningMove(player), win);
+                assertEquals(-1, B.winningMove(player.opposite()));
+                if (win >= 0) {
+                    found += 1;
+                    B.addSpot(player, win);
+                    assertEquals(player, B.getWinner());
+                    B.undo();
+                }
+                if (depth > 0 && random.nextInt(4) == 0) {
+                    B.undo();
+                    depth -= 1;
+                } else {
+                    int k = B.legalMoves(player, moves);
+                    B.addSpot(player, moves[random.nextInt(k)]);
+                    depth += 1;
+                }
+            }
+        }
+        assertTrue("no wins found", found > 0);
+    }
+
+    /** Checks that, once warmed up, making and undoing moves (including
+     *  long cascades) allocates no storage. */
+    @Test
+    public void testMovesDoNotAllocate() {
+        com.sun.management.ThreadMXBean bean =
+            (com.sun.management.ThreadMXBean)
+            ManagementFactory.getThreadMXBean();
+        if (!bean.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        bean.setThreadAllocatedMemoryEnabled(true);
+        Board B = new Board(6);
+        for (int n = 0; n < 36; n += 1) {
+            B.set(B.row(n), B.col(n), B.neighbors(n), n % 3 == 0 ? BLUE : RED);
+        }
+        B = new Board(B);
+        Side player = B.whoseMove();
+        for (int k = 0; k < 3000; k += 1) {
+            makeAndUndoMoves(B, player);
+        }
+        long before = bean.getCurrentThreadAllocatedBytes();
+        makeAndUndoMoves(B, player);
+        long after = bean.getCurrentThreadAllocatedBytes();
+        assertEquals("bytes allocated by moves", 0, after - before);
+    }
+
+    /** Make and undo every legal move for PLAYER on B. */
+    private void makeAndUndoMoves(Board B, Side player) {
+        for (int n = 0; n < B.size() * B.size(); n += 1) {
+            if (B.isLegal(player, n)) {
+                B.addSpot(player, n);
+                B.undo();
+            }
+        }
+    }
 }
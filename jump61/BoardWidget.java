@@ -49,7 +49,7 @@ class BoardWidget extends Pad {
      *  responds to events, and the display thread).  We don't want the
      *  saved copy of our Board to change while it is being displayed. */
 
-    /** Update my display to show BOARD.  Here, we save a copy of
+    /** Update my display to show BOARD.  Here, we save a snapshot of
      *  BOARD (so that we can deal with changes to it only when we are ready
      *  for them), and recompute the size of the displayed board. */
     synchronized void update(Board board) {
@@ -59,7 +59,7 @@ class BoardWidget extends Pad {
         if (_board != null && _board.size() != board.size()) {
             invalidate();
         }
-        _board = new Board(board);
+        _board = board.snapshot();
         _side = _board.size() * SQUARE_SEP + SEPARATOR_SIZE;
     }
 
@@ -1,8 +1,11 @@
 package jump61;
 
+import java.util.ArrayList;
+
 /** A ConstantBoard is a view of an existing Board that does not allow
  *  modifications. Changes made to the underlying Board are reflected in
- *  ConstantBoards formed from it.
+ *  ConstantBoards formed from it.  Snapshots (see Board.snapshot) are
+ *  ConstantBoards of Boards that never change.
  *  @author P. N. Hilfinger
  */
 class ConstantBoard extends Board {
@@ -23,11 +26,36 @@ class ConstantBoard extends Board {
         return _board.size();
     }
 
+    @Override
+    Geometry geometry() {
+        return _board.geometry();
+    }
+
     @Override
     Square get(int n) {
         return _board.get(n);
     }
 
+    @Override
+    int code(int n) {
+        return _board.code(n);
+    }
+
+    @Override
+    Tiles tiles() {
+        return _board.tiles();
+    }
+
+    @Override
+    Board contents() {
+        return _board.contents();
+    }
+
+    @Override
+    Board snapshot() {
+        return _board.snapshot();
+    }
+
     @Override
     int numPieces() {
         return _board.numPieces();
@@ -43,11 +71,71 @@ class ConstantBoard extends Board {
         return _board.isLegal(player, r, c);
     }
 
+    @Override
+    boolean isLegal(Side player, int n) {
+        return _board.isLegal(player, n);
+    }
+
     @Override
     boolean isLegal(Side player) {
         return _board.isLegal(player);
     }
 
+    @Override
+    Side getWinner() {
+        return _board.getWinner();
+    }
+
+    @Override
+    int numPieces(Side side) {
+        return _board.numPieces(side);
+    }
+
+    @Override
+    int numCritical(Side side) {
+        return _board.numCritical(side);
+    }
+
+    @Override
+    int criticalSpots(Side side) {
+        return _board.criticalSpots(side);
+    }
+
+    @Override
+    int legalMoves(Side player, int[] moves) {
+        return _board.legalMoves(player, moves);
+    }
+
+    @Override
+    int maskWords() {
+        return _board.maskWords();
+    }
+
+    @Override
+    void legalMask(Side player, long[] mask) {
+        _board.legalMask(player, mask);
+    }
+
+    @Override
+    void criticalMask(Side side, long[] mask) {
+        _board.criticalMask(side, mask);
+    }
+
+    @Override
+    int winningMove(Side player) {
+        return _board.winningMove(player);
+    }
+
+    @Override
+    int[][] heuristicValues() {
+        return _board.heuristicValues();
+    }
+
+    @Override
+    public ArrayList<Square> getLegalSides(Side player) {
+        return _board.getLegalSides(player);
+    }
+
     @Override
     int numOfSide(Side color) {
         return _board.numOfSide(color);
@@ -63,6 +151,11 @@ class ConstantBoard extends Board {
         return _board.hashCode();
     }
 
+    @Override
+    long zobrist() {
+        return _board.zobrist();
+    }
+
     /* Mutators modified to do nothing. */
 
     @Override
@@ -0,0 +1,127 @@
+package jump61;
+
+import java.util.Arrays;
+
+/** The clusters of the almost overfilled ("critical") squares of a board:
+ *  the sets of critical squares connected through neighbors that are
+ *  also critical, of either side.  A spot added to any square of a
+ *  cluster makes it jump, adding a spot to each of its neighbors, so that
+ *  the whole cluster jumps in turn.  A move on a critical square thus
+ *  captures at least its cluster and all their neighbors: the cluster's
+ *  reach, kept here as a mask (see Geometry).
+ *
+ *  Clusters are kept in a union-find forest over square numbers.  Squares
+ *  are only ever added; when a square stops being critical, the owner of
+ *  the index clears and rebuilds it.
+ *  @author Evelyn Vo
+ */
+class CriticalClusters {
+
+    /** An empty index for the squares of a board laid out as GEOMETRY. */
+    CriticalClusters(Geometry geometry) {
+        int numSquares = geometry.size() * geometry.size();
+        _geometry = geometry;
+        _words = geometry.maskWords();
+        _parent = new int[numSquares];
+        _size = new int[numSquares];
+        _reach = new long[numSquares * _words];
+        clear();
+    }
+
+    /** Remove all squares from me. */
+    void clear() {
+        Arrays.fill(_parent, -1);
+    }
+
+    /** Return true iff square #N is in a cluster. */
+    boolean contains(int n) {
+        return _parent[n] >= 0;
+    }
+
+    /** Add square #N, a critical square, to me, merging its cluster with
+     *  those of its neighbors that I contain. */
+    void add(int n) {
+        _parent[n] = n;
+        _size[n] = 1;
+        int base = n * _words;
+        Arrays.fill(_reach, base, base + _words, 0L);
+        _reach[base + (n >>> WORD_SHIFT)] |= 1L << n;
+        int k = _geometry.adjacent(n, _adjacent);
+        for (int i = 0; i < k; i += 1) {
+            int m = _adjacent[i];
+            _reach[base + (m >>> WORD_SHIFT)] |= 1L << m;
+        }
+        for (int i = 0; i < k; i += 1) {
+            if (contains(_adjacent[i])) {
+                union(n, _adjacent[i]);
+            }
+        }
+    }
+
+    /** Return the root of the cluster containing square #N, which I
+     *  contain.  Compresses the path from #N as it goes. */
+    int find(int n) {
+        int root = n;
+        while (_parent[root] != root) {
+            root = _parent[root];
+        }
+        while (_parent[n] != root) {
+            int next = _parent[n];
+            _parent[n] = root;
+            n = next;
+        }
+        return root;
+    }
+
+    /** Return true iff the reach of the cluster whose root is ROOT
+     *  includes every square in MASK. */
+    boolean reaches(int root, long[] mask) {
+        int base = root * _words;
+        for (int w = 0; w < _words; w += 1) {
+            if ((mask[w] & ~_reach[base + w]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Merge the clusters containing squares #A and #B, attaching the
+     *  root of the smaller to that of the larger. */
+    private void union(int a, int b) {
+        a = find(a);
+        b = find(b);
+        if (a == b) {
+            return;
+        } else if (_size[a] < _size[b]) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        _parent[b] = a;
+        _size[a] += _size[b];
+        int baseA = a * _words, baseB = b * _words;
+        for (int w = 0; w < _words; w += 1) {
+            _reach[baseA + w] |= _reach[baseB + w];
+        }
+    }
+
+    /** Shift converting a square number to the index of its word in a
+     *  mask. */
+    private static final int WORD_SHIFT = 6;
+
+    /** The layout of the squares. */
+    private final Geometry _geometry;
+    /** Number of longs in a mask of the squares. */
+    private final int _words;
+    /** _parent[N] is the parent of square #N in the forest (itself for a
+     *  root), or -1 if #N is in no cluster. */
+    private final int[] _parent;
+    /** _size[R] is the number of squares in the cluster whose root is
+     *  R. */
+    private final int[] _size;
+    /** _reach[R * _words .. (R + 1) * _words - 1] is the mask of the reach
+     *  of the cluster whose root is R. */
+    private final long[] _reach;
+    /** Holds the neighbors of the square being added. */
+    private final int[] _adjacent = new int[Geometry.MAX_NEIGHBORS];
+}
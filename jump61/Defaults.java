@@ -11,7 +11,44 @@ class Defaults {
     /** Default board size. */
     static final int BOARD_SIZE = 6;
 
-    /** Maximum number of squares on the side of a game board. */
-    static final int MAX_BOARD_SIZE = 10;
+    /** Maximum number of squares on the side of a game board.  Boards
+     *  much larger than 10 are meant for simulation rather than play
+     *  against the AI. */
+    static final int MAX_BOARD_SIZE = 10000;
+
+    /** Maximum number of squares on the side of a board on which an AI
+     *  will play.  Its search keeps tables with an entry per square for
+     *  each ply, which would not fit in memory on the largest boards. */
+    static final int MAX_AI_BOARD_SIZE = 1000;
+
+    /** Default size in megabytes of an AI's transposition table. */
+    static final int HASH_MEGABYTES = 16;
+
+    /** Default budget of positions searched by an AI for each move.
+     *  Unlike a time budget, this makes the AI's choices reproducible. */
+    static final long MOVE_NODES = 20000;
+
+    /** Default budget of playouts made by a tree-searching AI (see
+     *  MctsAI) for each move. */
+    static final long MOVE_PLAYOUTS = 2000;
+
+    /** Default budget of positions searched by the proof-number solver
+     *  (see ProofSolver) when an AI tries to solve a decisive position:
+     *  0, so that AIs do not try unless the --solve option asks them to. */
+    static final long SOLVE_NODES = 0;
+
+    /** Default budget of positions searched by the solve command when
+     *  neither it nor the --solve option gives one. */
+    static final long SOLVE_COMMAND_NODES = 20000;
+
+    /** Default maximum depth of AI searches. */
+    static final int MAX_SEARCH_DEPTH = 64;
+
+    /** Default number of threads used by an AI search. */
+    static final int SEARCH_THREADS = 1;
+
+    /** Default number of threads used to resolve large cascades on the
+     *  game board. */
+    static final int CASCADE_THREADS = 1;
 
 }
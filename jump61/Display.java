@@ -107,6 +107,11 @@ class Display extends TopLevel implements View, CommandSource, Reporter {
         showMessage(String.format(format, args), "", "information");
     }
 
+    @Override
+    public void dump(Board board) {
+        msg("%s", board);
+    }
+
     @Override
     public void err(String format, Object... args) {
         showMessage(String.format(format, args), "Error", "error");
@@ -1,5 +1,11 @@
 package jump61;
 
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Formatter;
+
 import static jump61.Side.*;
 import static jump61.GameException.error;
 import static jump61.Utils.*;
@@ -16,7 +22,7 @@ class Game {
     private static final String[] COMMAND_NAMES = {
         "auto", "board", "clear", "dump", "help", "manual",
         "new", "q", "quiet", "quit",
-        "seed", "set", "size", "start", "verbose",
+        "seed", "set", "simulate", "size", "solve", "start", "verbose",
     };
 
     /** A new Game that takes command/move input from INP, logs
@@ -34,6 +40,10 @@ class Game {
         _board = new Board(Defaults.BOARD_SIZE);
         _readonlyBoard = new ConstantBoard(_board);
         _board.setNotifier((b) -> _view.update(b));
+        if (Main.cascadeThreads() > 1) {
+            _cascade = new TiledCascade(Main.cascadeThreads());
+            _board.setCascade(_cascade);
+        }
     }
 
     /** Returns a readonly view of the game board.  This board remains valid
@@ -56,7 +66,7 @@ class Game {
         System.out.println("Welcome to " + Defaults.VERSION);
         _board.clear(Defaults.BOARD_SIZE);
         setManual(RED);
-        setAuto(BLUE);
+        setAuto(BLUE, "minimax");
         _exit = -1;
         winnerAnnounced = false;
         while (_exit < 0) {
@@ -65,6 +75,7 @@ class Game {
             if (_board.getWinner() == null) {
                 winnerAnnounced = false;
                 try {
+                    checkPlayerFits(_board.whoseMove());
                     executeCommand(getPlayer(_board.whoseMove()).getMove());
                 } catch (GameException e) {
                     reportError(e.getMessage());
@@ -77,6 +88,11 @@ class Game {
                 executeCommand(getCommand());
             }
         }
+        for (Player player : _players) {
+            if (player != null) {
+                player.stop();
+            }
+        }
         return _exit;
     }
 
@@ -145,12 +161,35 @@ class Game {
         _reporter.msg("%s wins.", _board.getWinner().toCapitalizedString());
     }
 
-    /** Make the player of COLOR an AI for subsequent moves. */
-    private void setAuto(Side color) {
-        setPlayer(color, new AI(this, color, _seed));
+    /** Make the player of COLOR an AI for subsequent moves, using the
+     *  search ENGINE: "minimax" (AI) or "mcts" (MctsAI). */
+    private void setAuto(Side color, String engine) {
+        switch (engine) {
+        case "minimax":
+            setPlayer(color, new AI(this, color, _seed));
+            break;
+        case "mcts":
+            setPlayer(color, new MctsAI(this, color, _seed));
+            break;
+        default:
+            throw error("unknown AI engine: %s", engine);
+        }
         _seed += 1;
     }
 
+    /** Make the player of COLOR manual, throwing a GameException that
+     *  says so, if it is an AI and the board is too large for it (see
+     *  Defaults.MAX_AI_BOARD_SIZE). */
+    private void checkPlayerFits(Side color) {
+        if (getPlayer(color).automated()
+            && _board.size() > Defaults.MAX_AI_BOARD_SIZE) {
+            setManual(color);
+            throw error("AI players are limited to boards of size at most"
+                        + " %d; %s is now a manual player",
+                        Defaults.MAX_AI_BOARD_SIZE, color);
+        }
+    }
+
     /** Make the player of COLOR take manual input from the user for
      *  subsequent moves. */
     private void setManual(Side color) {
@@ -162,8 +201,11 @@ class Game {
         return _players[color.ordinal()];
     }
 
-    /** Set getPlayer(COLOR) to PLAYER. */
+    /** Set getPlayer(COLOR) to PLAYER, stopping the player it replaces. */
     private void setPlayer(Side color, Player player) {
+        if (getPlayer(color) != null) {
+            getPlayer(color).stop();
+        }
         _players[color.ordinal()] = player;
     }
 
@@ -174,7 +216,7 @@ class Game {
 
     /** Print the current board using standard board-dump format. */
     private void dump() {
-        _reporter.msg(_board.toString());
+        _reporter.dump(_board);
     }
 
     /** Print a board with row/column numbers. */
@@ -192,6 +234,57 @@ class Game {
         _seed = seed;
     }
 
+    /** Drop DROPS spots at random on a copy of the board, as described
+     *  for Sandpile, and report the resulting avalanche statistics.  If
+     *  FILE is not null, write a record of each drop to the file it
+     *  names. */
+    private void simulate(long drops, String file) {
+        if (drops <= 0) {
+            throw error("number of drops must be positive");
+        }
+        Board board = new Board(_board);
+        board.setNotifier((b) -> { });
+        board.setCascade(_cascade);
+        Sandpile sandpile = new Sandpile(board, _seed);
+        _seed += 1;
+        try (OutputStream out = file == null ? null
+             : new BufferedOutputStream(new FileOutputStream(file))) {
+            sandpile.run(drops, out);
+        } catch (IOException excp) {
+            throw error("cannot write %s: %s", file, excp.getMessage());
+        }
+        Formatter summary = new Formatter();
+        sandpile.report(summary);
+        _reporter.msg("%s", summary);
+    }
+
+    /** Report which side can force a win from the current position, and a
+     *  winning move if it is the side to move, as proven by ProofSolver
+     *  searching at most NODES positions. */
+    private void solve(long nodes) {
+        if (nodes <= 0) {
+            throw error("number of positions must be positive");
+        } else if (!gameInProgress()) {
+            throw error("game is over");
+        }
+        if (_solver == null) {
+            _solver = new ProofSolver(Main.hashMegabytes());
+        }
+        Side winner = _solver.solve(_board, nodes);
+        if (winner == null) {
+            _reporter.msg("No forced win found in %d positions.",
+                          _solver.nodes());
+        } else if (winner == _board.whoseMove()) {
+            _reporter.msg("%s wins with %s (%d positions).",
+                          winner.toCapitalizedString(),
+                          _board.moveString(_solver.winningMove()),
+                          _solver.nodes());
+        } else {
+            _reporter.msg("%s wins (%d positions).",
+                          winner.toCapitalizedString(), _solver.nodes());
+        }
+    }
+
     /** Place SPOTS spots on square R:C and color the square red or
      *  blue depending on whether COLOR is "r" or "b".  If SPOTS is
      *  0, clears the square, ignoring COLOR.  SPOTS must be less than
@@ -207,11 +300,12 @@ class Game {
     }
 
     /** Stop any current game and set the board to an empty N x N board
-     *  with numMoves() == 0.  Requires 2 <= N <= 10. */
+     *  with numMoves() == 0.  Requires 2 <= N <= Defaults.MAX_BOARD_SIZE. */
     private void setSize(int n) {
         log("size %d", n);
-        if (n < 2 || n > 10) {
-            throw error("size must be between 2 and 10");
+        if (n < 2 || n > Defaults.MAX_BOARD_SIZE) {
+            throw error("size must be between 2 and %d",
+                        Defaults.MAX_BOARD_SIZE);
         }
         _board.clear(n);
     }
@@ -257,7 +351,8 @@ class Game {
             case "#": case "":
                 break;
             case "auto":
-                setAuto(toSide(parts[1]));
+                setAuto(toSide(parts[1]),
+                        parts.length > 2 ? parts[2] : "minimax");
                 break;
             case "board":
                 printBoard();
@@ -287,9 +382,19 @@ class Game {
                 setSpots(toInt(parts[1]), toInt(parts[2]), toInt(parts[3]),
                          parts[4]);
                 break;
+            case "simulate":
+                simulate(toLong(parts[1]),
+                         parts.length > 2 ? cmnd.trim().split("\\s+")[2]
+                         : null);
+                break;
             case "size":
                 setSize(toInt(parts[1]));
                 break;
+            case "solve":
+                solve(parts.length > 1 ? toLong(parts[1])
+                      : Main.solveNodes() > 0 ? Main.solveNodes()
+                      : Defaults.SOLVE_COMMAND_NODES);
+                break;
             case "verbose":
                 _verbose = true;
                 break;
@@ -330,6 +435,12 @@ class Game {
     /** Outlet for responses to the user. */
     private final Reporter _reporter;
 
+    /** Solver used by the solve command.  Allocated on first use. */
+    private ProofSolver _solver;
+
+    /** Resolves large cascades on _board, or null if none. */
+    private TiledCascade _cascade;
+
     /** The board on which I record all moves. */
     private final Board _board;
     /** A readonly view of _board. */
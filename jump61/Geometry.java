@@ -0,0 +1,187 @@
+package jump61;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Immutable tables describing the layout of the squares of an N x N
+ *  board: the row and column of each square number and the neighbors of
+ *  each square.  One Geometry is built for each board size in use and is
+ *  shared by all Boards of that size.
+ *
+ *  For boards of up to MAX_TABULATED squares on a side, the row, column,
+ *  and neighbors of every square are tabulated, the neighbors in
+ *  compressed sparse row form.  Larger boards would need dozens of bytes
+ *  per square for these tables, so their Geometries compute the same
+ *  answers from the square numbers instead.  Either way, adjacent lists
+ *  the neighbors of a square in the order above, left, right, below.
+ *
+ *  Sets of squares are represented as masks: arrays of maskWords() longs
+ *  in which square #N is bit N % 64 of word N / 64.
+ *  @author Evelyn Vo
+ */
+class Geometry {
+
+    /** The tables for an N x N board. */
+    private Geometry(int N) {
+        _size = N;
+        int numSquares = N * N;
+        _maskWords = (numSquares + Long.SIZE - 1) / Long.SIZE;
+        if (N > MAX_TABULATED) {
+            _rows = _cols = _neighbors = _adjacentStart = _adjacent = null;
+            _degreeMasks = null;
+            return;
+        }
+        _rows = new int[numSquares];
+        _cols = new int[numSquares];
+        _neighbors = new int[numSquares];
+        _adjacentStart = new int[numSquares + 1];
+        _adjacent = new int[4 * numSquares - 4 * N];
+        _degreeMasks = new long[MAX_NEIGHBORS + 1][_maskWords];
+        int k;
+        k = 0;
+        for (int n = 0; n < numSquares; n += 1) {
+            _rows[n] = n / N + 1;
+            _cols[n] = n % N + 1;
+            _adjacentStart[n] = k;
+            k += computeAdjacent(n, _adjacent, k);
+            _neighbors[n] = k - _adjacentStart[n];
+            _degreeMasks[_neighbors[n]][n / Long.SIZE] |= 1L << n;
+        }
+        _adjacentStart[numSquares] = k;
+    }
+
+    /** Return the tables for an N x N board, where
+     *  2 <= N <= Defaults.MAX_BOARD_SIZE. */
+    static Geometry of(int N) {
+        if (N <= MAX_TABULATED) {
+            return GEOMETRIES[N];
+        }
+        return LARGE_GEOMETRIES.computeIfAbsent(N, Geometry::new);
+    }
+
+    /** Return the number of rows and of columns I describe. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the row number (from 1) of square #N. */
+    int row(int n) {
+        return _rows == null ? n / _size + 1 : _rows[n];
+    }
+
+    /** Return the column number (from 1) of square #N. */
+    int col(int n) {
+        return _cols == null ? n % _size + 1 : _cols[n];
+    }
+
+    /** Return the number of neighbors of square #N. */
+    int neighbors(int n) {
+        if (_neighbors != null) {
+            return _neighbors[n];
+        }
+        int r = n / _size, c = n - r * _size, last = _size - 1;
+        return MAX_NEIGHBORS - (r == 0 ? 1 : 0) - (r == last ? 1 : 0)
+            - (c == 0 ? 1 : 0) - (c == last ? 1 : 0);
+    }
+
+    /** Store the numbers of the neighbors of square #N in
+     *  RESULT[0 .. k-1], in the order above, left, right, below, and
+     *  return k.  RESULT must have room for MAX_NEIGHBORS values. */
+    int adjacent(int n, int[] result) {
+        if (_adjacent == null) {
+            return computeAdjacent(n, result, 0);
+        }
+        int start = _adjacentStart[n], k = _adjacentStart[n + 1] - start;
+        for (int i = 0; i < k; i += 1) {
+            result[i] = _adjacent[start + i];
+        }
+        return k;
+    }
+
+    /** Store the numbers of the neighbors of square #N in order in
+     *  RESULT[START .. START + k - 1], and return k. */
+    private int computeAdjacent(int n, int[] result, int start) {
+        int r = n / _size, c = n - r * _size, last = _size - 1;
+        int k = start;
+        if (r > 0) {
+            result[k] = n - _size;
+            k += 1;
+        }
+        if (c > 0) {
+            result[k] = n - 1;
+            k += 1;
+        }
+        if (c < last) {
+            result[k] = n + 1;
+            k += 1;
+        }
+        if (r < last) {
+            result[k] = n + _size;
+            k += 1;
+        }
+        return k - start;
+    }
+
+    /** Return the number of longs in a mask of my squares. */
+    int maskWords() {
+        return _maskWords;
+    }
+
+    /** Return word W of the mask of squares having K neighbors, where
+     *  0 <= K <= MAX_NEIGHBORS. */
+    long degreeBits(int k, int w) {
+        if (_degreeMasks != null) {
+            return _degreeMasks[k][w];
+        }
+        long bits = 0;
+        int end = Math.min(Long.SIZE, _size * _size - w * Long.SIZE);
+        for (int i = 0; i < end; i += 1) {
+            if (neighbors(w * Long.SIZE + i) == k) {
+                bits |= 1L << i;
+            }
+        }
+        return bits;
+    }
+
+    /** The largest number of neighbors of any square. */
+    static final int MAX_NEIGHBORS = 4;
+
+    /** The smallest number of neighbors of any square. */
+    static final int MIN_NEIGHBORS = 2;
+
+    /** The largest board size whose layout is tabulated. */
+    static final int MAX_TABULATED = 32;
+
+    /** GEOMETRIES[N] describes an N x N board, for N <= MAX_TABULATED. */
+    private static final Geometry[] GEOMETRIES =
+        new Geometry[MAX_TABULATED + 1];
+
+    static {
+        for (int N = 2; N <= MAX_TABULATED; N += 1) {
+            GEOMETRIES[N] = new Geometry(N);
+        }
+    }
+
+    /** The Geometries of the larger boards used so far, by size. */
+    private static final ConcurrentHashMap<Integer, Geometry>
+        LARGE_GEOMETRIES = new ConcurrentHashMap<>();
+
+    /** The number of rows and of columns. */
+    private final int _size;
+    /** _rows[N] and _cols[N] are the row and column of square #N, or null
+     *  if not tabulated. */
+    private final int[] _rows, _cols;
+    /** _neighbors[N] is the number of neighbors of square #N, or null if
+     *  not tabulated. */
+    private final int[] _neighbors;
+    /** Offsets of the neighbor lists of each square in _adjacent, or null
+     *  if not tabulated. */
+    private final int[] _adjacentStart;
+    /** The neighbor lists of all squares, concatenated, or null if not
+     *  tabulated. */
+    private final int[] _adjacent;
+    /** Number of longs in a mask of my squares. */
+    private final int _maskWords;
+    /** _degreeMasks[K] is the mask of squares having K neighbors, or null
+     *  if not tabulated. */
+    private final long[][] _degreeMasks;
+}
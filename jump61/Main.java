@@ -24,7 +24,14 @@ public class Main {
     public static void main(String[] args0) {
         CommandArgs args =
             new CommandArgs("--display{0,1} --strict{0,1} --version{0,1}"
-                            + " --debug=(\\d+){0,1} --log --=(.*){0,}", args0);
+                            + " --debug=(\\d+){0,1} --hash=(\\d+){0,1}"
+                            + " --time=(\\d+){0,1} --nodes=(\\d+){0,1}"
+                            + " --playouts=(\\d+){0,1} --solve=(\\d+){0,1}"
+                            + " --depth=([1-9]\\d*){0,1}"
+                            + " --threads=([1-9]\\d*){0,1}"
+                            + " --cascades=([1-9]\\d*){0,1}"
+                            + " --ponder{0,1}"
+                            + " --log --=(.*){0,}", args0);
 
         if (!args.ok()) {
             usage();
@@ -41,6 +48,32 @@ public class Main {
         if (args.contains("--debug")) {
             Utils.setMessageLevel(args.getInt("--debug"));
         }
+        if (args.contains("--hash")) {
+            _hashMegabytes = args.getInt("--hash");
+        }
+        if (args.contains("--time")) {
+            _moveTime = args.getLong("--time");
+            _moveNodes = _movePlayouts = 0;
+        }
+        if (args.contains("--nodes")) {
+            _moveNodes = args.getLong("--nodes");
+        }
+        if (args.contains("--playouts")) {
+            _movePlayouts = args.getLong("--playouts");
+        }
+        if (args.contains("--solve")) {
+            _solveNodes = args.getLong("--solve");
+        }
+        if (args.contains("--depth")) {
+            _maxDepth = args.getInt("--depth");
+        }
+        if (args.contains("--threads")) {
+            _threads = args.getInt("--threads");
+        }
+        if (args.contains("--cascades")) {
+            _cascadeThreads = args.getInt("--cascades");
+        }
+        _ponder = args.contains("--ponder");
 
         Game game;
         if (args.contains("--display")) {
@@ -78,6 +111,82 @@ public class Main {
         return _strict;
     }
 
+    /** Return the size in megabytes of each AI's transposition table. */
+    static int hashMegabytes() {
+        return _hashMegabytes;
+    }
+
+    /** Return the time budget in milliseconds for each AI move, or 0 if
+     *  unlimited.  An AI stops deepening its search once the budget is
+     *  spent. */
+    static long moveTime() {
+        return _moveTime;
+    }
+
+    /** Return the budget of positions searched for each AI move, or 0 if
+     *  unlimited.  An AI stops deepening its search once the budget is
+     *  spent. */
+    static long moveNodes() {
+        return _moveNodes;
+    }
+
+    /** Return the budget of playouts for each move of a tree-searching
+     *  AI (see MctsAI), or 0 if unlimited.  The search stops once the
+     *  budget is spent. */
+    static long movePlayouts() {
+        return _movePlayouts;
+    }
+
+    /** Return the budget of positions searched by the proof-number
+     *  solver (see ProofSolver) when an AI tries to solve a decisive
+     *  position, and the default for the solve command, or 0 (the
+     *  default) if AIs do not try. */
+    static long solveNodes() {
+        return _solveNodes;
+    }
+
+    /** Return the maximum depth to which an AI searches. */
+    static int maxDepth() {
+        return _maxDepth;
+    }
+
+    /** Set the limits of AI searches as if by the options --hash=HASH,
+     *  --depth=MAXDEPTH, --nodes=MOVENODES, and --time=MOVETIME, where
+     *  MOVENODES or MOVETIME 0 means unlimited.  For benchmarks and other
+     *  programs that do not go through main. */
+    static void setSearchLimits(int hash, int maxDepth, long moveNodes,
+                                long moveTime) {
+        _hashMegabytes = hash;
+        _maxDepth = maxDepth;
+        _moveNodes = moveNodes;
+        _moveTime = moveTime;
+    }
+
+    /** Make AIs ponder iff PONDER, as if by the option --ponder.  For
+     *  tests and other programs that do not go through main. */
+    static void setPonder(boolean ponder) {
+        _ponder = ponder;
+    }
+
+    /** Return the number of threads with which an AI searches.  With
+     *  one thread, the AI's choices are reproducible. */
+    static int threads() {
+        return _threads;
+    }
+
+    /** Return true iff AIs are to ponder: search, in the background, the
+     *  position after each of their moves while their opponent is
+     *  choosing a reply. */
+    static boolean ponder() {
+        return _ponder;
+    }
+
+    /** Return the number of threads with which the game board resolves
+     *  large cascades. */
+    static int cascadeThreads() {
+        return _cascadeThreads;
+    }
+
     /** Print usage message. */
     private static void usage() {
         printHelpResource(USAGE, System.err);
@@ -87,5 +196,25 @@ public class Main {
     private static boolean _strict;
     /** True if we should log moves and commands. */
     private static boolean _log;
+    /** Size in megabytes of each AI's transposition table. */
+    private static int _hashMegabytes = Defaults.HASH_MEGABYTES;
+    /** Time budget in milliseconds for each AI move (0 if unlimited). */
+    private static long _moveTime;
+    /** Budget of positions for each AI move (0 if unlimited). */
+    private static long _moveNodes = Defaults.MOVE_NODES;
+    /** Budget of playouts for each tree-searching AI move (0 if
+     *  unlimited). */
+    private static long _movePlayouts = Defaults.MOVE_PLAYOUTS;
+    /** Budget of positions for each proof-number solve by an AI (0 if
+     *  none). */
+    private static long _solveNodes = Defaults.SOLVE_NODES;
+    /** Maximum depth of AI searches. */
+    private static int _maxDepth = Defaults.MAX_SEARCH_DEPTH;
+    /** Number of threads used by each AI search. */
+    private static int _threads = Defaults.SEARCH_THREADS;
+    /** Number of threads used to resolve large cascades. */
+    private static int _cascadeThreads = Defaults.CASCADE_THREADS;
+    /** True iff AIs ponder. */
+    private static boolean _ponder;
 
 }
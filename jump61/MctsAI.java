@@ -0,0 +1,341 @@
+package jump61;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+import static jump61.Side.*;
+import static jump61.Utils.*;
+
+/** An automated Player that chooses its moves by Monte Carlo tree search
+ *  (UCT), as an alternative to the minimax search of AI.
+ *
+ *  Each iteration of the search walks down a tree of the positions
+ *  reachable from the current one, choosing at each node the child that
+ *  maximizes its win rate plus an exploration bonus that shrinks as the
+ *  child is visited more often (the UCB1 formula).  At the first node
+ *  with a move not yet in the tree, it adds the child for one such move,
+ *  chosen at random, and then finishes the game from there by random
+ *  legal moves (a playout).  The result of the playout is credited to
+ *  every node on the path.  The search stops when it exhausts its budget
+ *  of time or playouts (see Main.moveTime and Main.movePlayouts), and the
+ *  move chosen is the most visited child of the root (or the first legal
+ *  move, if the time ran out before the first playout).
+ *
+ *  When Main.threads() > 1, playouts run in parallel in several threads,
+ *  which share the tree.  A thread holds the tree's lock only while it
+ *  walks down or updates the tree, and counts each node on its path as a
+ *  lost visit until its playout's result arrives (a "virtual loss"), so
+ *  that other threads meanwhile tend to explore other paths.
+ *  @author Evelyn Vo
+ */
+class MctsAI extends Player {
+
+    /** A new player of GAME initially COLOR that chooses moves by tree
+     *  search.  SEED provides a random-number seed used for choosing
+     *  moves. */
+    MctsAI(Game game, Side color, long seed) {
+        super(game, color);
+        _random = new Random(seed);
+    }
+
+    @Override
+    boolean automated() {
+        return true;
+    }
+
+    @Override
+    String getMove() {
+        Board board = getGame().getBoard();
+        assert getSide() == board.whoseMove();
+        int choice = searchForMove();
+        getGame().reportMove(board.row(choice), board.col(choice));
+        return String.format("%d %d", board.row(choice), board.col(choice));
+    }
+
+    /** Return the square number of the move chosen by a tree search from
+     *  the current position, as described above.  Assumes the game is not
+     *  over. */
+    private int searchForMove() {
+        long start = System.nanoTime();
+        _deadline = Main.moveTime() > 0
+            ? start + Main.moveTime() * NANOS_PER_MILLI : Long.MAX_VALUE;
+        _playoutLimit = Main.movePlayouts() > 0 ? Main.movePlayouts()
+            : Main.moveTime() > 0 ? Long.MAX_VALUE : Defaults.MOVE_PLAYOUTS;
+        _playouts = 0;
+        _treeSize = 1;
+        Board position = searchBoard();
+        _root = new Node(-1, position.whoseMove().opposite(), position);
+        if (_root.numUntried == 1) {
+            return _root.untried[0];
+        }
+        int numHelpers = Main.threads() - 1;
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[numHelpers];
+        for (int i = 0; i < numHelpers; i += 1) {
+            Worker helper =
+                new Worker(searchBoard(), new Random(_random.nextLong()));
+            tasks[i] = pool().submit(helper::run);
+        }
+        new Worker(position, _random).run();
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+        if (_root.numChildren == 0) {
+            return _root.untried[0];
+        }
+        Node best = _root.children[0];
+        for (int k = 1; k < _root.numChildren; k += 1) {
+            if (_root.children[k].visits > best.visits) {
+                best = _root.children[k];
+            }
+        }
+        long nanos = Math.max(System.nanoTime() - start, 1);
+        debug(1, "%s: %d playouts (%d threads), %d ms, %.0f playouts/s,"
+              + " tree of %d nodes, %.1f%% wins for chosen move",
+              getSide(), _playouts, numHelpers + 1,
+              nanos / NANOS_PER_MILLI, _playouts * 1e9 / nanos, _treeSize,
+              100.0 * best.wins / Math.max(best.visits, 1));
+        return best.move;
+    }
+
+    /** Return a private copy of the current position to search. */
+    private Board searchBoard() {
+        Board work = new Board(getBoard());
+        work.setNotifier(NO_NOTIFIER);
+        return work;
+    }
+
+    /** Return the pool of threads in which helpers search, creating it on
+     *  first use. */
+    private static synchronized ForkJoinPool pool() {
+        if (_pool == null) {
+            _pool = new ForkJoinPool(Math.max(1, Main.threads() - 1));
+        }
+        return _pool;
+    }
+
+    /** A node of the search tree: a position reached from that of its
+     *  parent by a move, together with the results of the playouts that
+     *  passed through it.  Accessed only while holding the lock on the
+     *  search. */
+    private static class Node {
+
+        /** A node for the position on BOARD, reached by MOVER's MOVE (a
+         *  square number), or -1 for the root.  MOVER is not necessarily
+         *  the opposite of board.whoseMove(): a cascade that loses spots
+         *  can leave the same side to move (see Board.whoseMove). */
+        Node(int move, Side mover, Board board) {
+            this.move = move;
+            this.mover = mover;
+            winner = board.getWinner();
+            if (winner == null) {
+                untried = new int[board.size() * board.size()];
+                numUntried = board.legalMoves(board.whoseMove(), untried);
+                children = new Node[numUntried];
+            }
+        }
+
+        /** The move leading to this node from its parent. */
+        final int move;
+        /** The side that made that move. */
+        final Side mover;
+        /** The winner in this node's position, or null if the game goes
+         *  on. */
+        final Side winner;
+        /** The children of this node, in children[0 .. numChildren-1]. */
+        Node[] children;
+        /** See children. */
+        int numChildren;
+        /** The legal moves from this node's position that have no child
+         *  yet, in untried[0 .. numUntried-1]. */
+        int[] untried;
+        /** See untried. */
+        int numUntried;
+        /** Number of playouts through this node, including those still in
+         *  progress, each of which counts VIRTUAL_LOSS times. */
+        int visits;
+        /** Number of playouts through this node won by mover. */
+        double wins;
+    }
+
+    /** Runs iterations of the search in one thread, holding its working
+     *  storage. */
+    private class Worker {
+
+        /** A Worker that searches from the position on ROOTBOARD, which
+         *  it does not modify, using RANDOM for its random choices. */
+        Worker(Board rootBoard, Random random) {
+            _rootBoard = rootBoard;
+            _random = random;
+            _board = new Board(rootBoard);
+            _moves = new int[rootBoard.size() * rootBoard.size()];
+            _path = new Node[PATH_CAPACITY];
+        }
+
+        /** Run iterations until the search is out of budget. */
+        void run() {
+            while (true) {
+                Node leaf;
+                _board.copy(_rootBoard);
+                synchronized (MctsAI.this) {
+                    if (_playouts >= _playoutLimit
+                        || System.nanoTime() >= _deadline) {
+                        return;
+                    }
+                    _playouts += 1;
+                    leaf = select();
+                }
+                Side winner = leaf.winner != null ? leaf.winner : playout();
+                synchronized (MctsAI.this) {
+                    update(winner);
+                }
+            }
+        }
+
+        /** Walk down the tree from the root to a node with untried moves
+         *  or a finished game, making the moves on _board and recording the
+         *  nodes in _path, and add a child for one of the untried moves, if
+         *  any.  Returns the last node reached. */
+        private Node select() {
+            Node node = _root;
+            _pathLength = 0;
+            addToPath(node);
+            while (node.winner == null && node.numUntried == 0) {
+                node = bestChild(node);
+                _board.addSpot(_board.whoseMove(), node.move);
+                addToPath(node);
+            }
+            if (node.numUntried > 0) {
+                int k = _random.nextInt(node.numUntried);
+                int move = node.untried[k];
+                node.numUntried -= 1;
+                node.untried[k] = node.untried[node.numUntried];
+                if (node.numUntried == 0) {
+                    node.untried = null;
+                }
+                Side player = _board.whoseMove();
+                _board.addSpot(player, move);
+                Node child = new Node(move, player, _board);
+                node.children[node.numChildren] = child;
+                node.numChildren += 1;
+                _treeSize += 1;
+                node = child;
+                addToPath(node);
+            }
+            return node;
+        }
+
+        /** Return the child of NODE with the highest UCB1 score. */
+        private Node bestChild(Node node) {
+            double logVisits = Math.log(node.visits);
+            Node best = null;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int k = 0; k < node.numChildren; k += 1) {
+                Node child = node.children[k];
+                double score = child.wins / child.visits
+                    + EXPLORATION * Math.sqrt(logVisits / child.visits);
+                if (score > bestScore) {
+                    best = child;
+                    bestScore = score;
+                }
+            }
+            return best;
+        }
+
+        /** Append NODE to _path, counting a virtual loss for it. */
+        private void addToPath(Node node) {
+            if (_pathLength == _path.length) {
+                Node[] path = new Node[2 * _pathLength];
+                System.arraycopy(_path, 0, path, 0, _pathLength);
+                _path = path;
+            }
+            _path[_pathLength] = node;
+            _pathLength += 1;
+            node.visits += VIRTUAL_LOSS;
+        }
+
+        /** Finish the game on _board with random legal moves, and return
+         *  the winner.  After MAX_PLAYOUT_MOVES per square, or once the
+         *  search is out of time, the side holding more squares is taken
+         *  as the winner. */
+        private Side playout() {
+            int limit = MAX_PLAYOUT_MOVES * _board.size() * _board.size();
+            for (int k = 0; k < limit && _board.getWinner() == null
+                     && System.nanoTime() < _deadline; k += 1) {
+                Side player = _board.whoseMove();
+                int numLegal = _board.legalMoves(player, _moves);
+                _board.addSpot(player, _moves[_random.nextInt(numLegal)]);
+            }
+            if (_board.getWinner() != null) {
+                return _board.getWinner();
+            }
+            return _board.numOfSide(RED) >= _board.numOfSide(BLUE)
+                ? RED : BLUE;
+        }
+
+        /** Credit the nodes on _path with a playout won by WINNER,
+         *  removing their virtual losses. */
+        private void update(Side winner) {
+            for (int k = 0; k < _pathLength; k += 1) {
+                Node node = _path[k];
+                node.visits += 1 - VIRTUAL_LOSS;
+                if (node.mover == winner) {
+                    node.wins += 1;
+                }
+            }
+        }
+
+        /** The position from which I search. */
+        private final Board _rootBoard;
+        /** Chooses among untried moves and the moves of playouts. */
+        private final Random _random;
+        /** The board on which I make the moves of each iteration. */
+        private final Board _board;
+        /** Holds the legal moves during playouts. */
+        private final int[] _moves;
+        /** The nodes visited by the current iteration, in
+         *  _path[0 .. _pathLength-1]. */
+        private Node[] _path;
+        /** See _path. */
+        private int _pathLength;
+    }
+
+    /** A random-number generator used for move selection. */
+    private final Random _random;
+
+    /** The root of the current search tree. */
+    private Node _root;
+
+    /** Number of nodes in the current search tree. */
+    private int _treeSize;
+
+    /** Number of playouts started by the current search. */
+    private long _playouts;
+
+    /** Limits on the current search: the value of System.nanoTime() and
+     *  of _playouts at which it stops. */
+    private long _deadline, _playoutLimit;
+
+    /** Threads in which helpers run.  Created on first use. */
+    private static ForkJoinPool _pool;
+
+    /** Notifier for the boards searched. */
+    private static final Consumer<Board> NO_NOTIFIER = (b) -> { };
+
+    /** Weight of the exploration term of the UCB1 formula. */
+    private static final double EXPLORATION = Math.sqrt(2);
+
+    /** Number of visits that a playout in progress counts as losing. */
+    private static final int VIRTUAL_LOSS = 1;
+
+    /** Length of the longest playout, in moves per square. */
+    private static final int MAX_PLAYOUT_MOVES = 8;
+
+    /** Initial capacity of a path through the tree. */
+    private static final int PATH_CAPACITY = 64;
+
+    /** Nanoseconds per millisecond. */
+    private static final long NANOS_PER_MILLI = 1000000;
+
+}
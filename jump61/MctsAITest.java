@@ -0,0 +1,95 @@
+package jump61;
+
+import static jump61.Side.*;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Unit tests of MctsAI.
+ *  @author Evelyn Vo */
+
+public class MctsAITest {
+
+    /* Testing Utilities */
+
+    /** Return a game in which both players are manual, after it has run
+     *  the commands in SCRIPT. */
+    private Game game(String script) {
+        List<Reader> inputs = new ArrayList<>();
+        inputs.add(new StringReader(String.format("manual red%nmanual blue%n"
+                                                  + "%s%nquit%n", script)));
+        Game game = new Game(new TextSource(inputs), (b) -> { },
+                             new TextReporter(), false);
+        game.play();
+        return game;
+    }
+
+    /** Return the square number of MOVE, a move given as "R C", on
+     *  B. */
+    private int square(Board B, String move) {
+        String[] rowCol = move.split(" ");
+        return B.sqNum(Integer.parseInt(rowCol[0]),
+                       Integer.parseInt(rowCol[1]));
+    }
+
+    /* Valid Tests */
+
+    /** Tests that MctsAI makes legal moves. */
+    @Test
+    public void legal() {
+        Game game = game("size 4");
+        Board B = game.getBoard();
+        for (long seed = 0; seed < 5; seed += 1) {
+            String move = new MctsAI(game, RED, seed).getMove();
+            assertTrue(move, B.isLegal(RED, square(B, move)));
+        }
+    }
+
+    /** Takes the only winning move in a 3x3 board, although its cascade
+     *  loses a spot, and so leaves Blue to move (see Board.whoseMove):
+     *  the wins of its playouts must be credited to Blue, which made it,
+     *  rather than to the opposite of the side to move after it. */
+    @Test
+    public void winWithoutPassingTurn() {
+        Game game = game("size 3\nset 1 1 2 r\nset 1 2 3 r\nset 1 3 1 r\n"
+                         + "set 2 1 3 b\nset 2 2 4 r\nset 2 3 1 b\n"
+                         + "set 3 1 2 r\nset 3 2 1 r\nset 3 3 1 b");
+        Board B = game.getBoard();
+        assertEquals(BLUE, B.whoseMove());
+        Board after = new Board(B);
+        after.addSpot(BLUE, 2, 1);
+        assertEquals(BLUE, after.getWinner());
+        assertEquals(BLUE, after.whoseMove());
+        for (long seed = 0; seed < 5; seed += 1) {
+            assertEquals("2 1", new MctsAI(game, BLUE, seed).getMove());
+        }
+    }
+
+    /** Moves legally, without changing the game board, even when its time
+     *  runs out before its first playout, as it may on a large board. */
+    @Test
+    public void shortTime() {
+        Game game = game("size 200");
+        Board B = game.getBoard();
+        Board original = new Board(B);
+        Main.setSearchLimits(Defaults.HASH_MEGABYTES,
+                             Defaults.MAX_SEARCH_DEPTH, 0, 1);
+        try {
+            for (long seed = 0; seed < 5; seed += 1) {
+                String move = new MctsAI(game, RED, seed).getMove();
+                assertTrue(move, B.isLegal(RED, square(B, move)));
+            }
+        } finally {
+            Main.setSearchLimits(Defaults.HASH_MEGABYTES,
+                                 Defaults.MAX_SEARCH_DEPTH,
+                                 Defaults.MOVE_NODES, 0);
+        }
+        assertEquals(original, B);
+    }
+
+}
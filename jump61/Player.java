@@ -36,6 +36,17 @@ abstract class Player {
      *  proper color and that the game is not yet won. */
     abstract String getMove();
 
+    /** Return true iff I choose my own moves, rather than taking them
+     *  from the user.  False by default. */
+    boolean automated() {
+        return false;
+    }
+
+    /** Stop any work I am doing in the background (see AI's pondering),
+     *  as when I leave the game.  Does nothing by default. */
+    void stop() {
+    }
+
     /** My current color. */
     private Side _color;
     /** The game I'm in. */
@@ -0,0 +1,309 @@
+package jump61;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/** A solver that proves or disproves that the side to move on a board can
+ *  force a win, by depth-first proof-number search (df-pn).
+ *
+ *  Each position has a proof number and a disproof number, both from the
+ *  point of view of its side to move: estimates of how many positions
+ *  must still be solved to prove that the side to move can force a win,
+ *  and to prove that it cannot.  A position lost by the side to move has
+ *  proof number INFINITY and disproof number 0; one it wins at once has
+ *  the reverse.  Otherwise, the proof number of a position is the least
+ *  disproof number of its children (the side to move need refute only
+ *  one reply), and its disproof number is the sum of their proof numbers
+ *  (it must show that every move loses).  An unsolved position not yet
+ *  searched counts 1 for each.  The side to move does not always change
+ *  (see Board.whoseMove): a child in which the same side is still to
+ *  move contributes its proof number to its parent's proof number, and
+ *  its disproof number to its parent's disproof number, instead.
+ *
+ *  The search always descends into the child of least disproof number
+ *  (the "most-proving" child), and stays below it as long as its numbers
+ *  stay below thresholds derived from those of its parent, so that it
+ *  need not return to the root after each expansion.  The numbers of the
+ *  positions searched are kept in a fixed-size table rather than in an
+ *  explicit tree; a position whose entry has been replaced is simply
+ *  searched again.  Every move adds a spot, so no position repeats and
+ *  the positions searched form an acyclic graph.
+ *  @author Evelyn Vo
+ */
+class ProofSolver {
+
+    /** A solver whose table occupies about MEGABYTES megabytes (at least
+     *  one bucket). */
+    ProofSolver(int megabytes) {
+        long entries = Math.max(2, ((long) megabytes << 20) / ENTRY_BYTES);
+        int buckets = Integer.highestOneBit((int) Math.min(entries / 2,
+                                                           1 << 30));
+        _keys = new long[2 * buckets];
+        _numbers = new long[2 * buckets];
+        _work = new long[2 * buckets];
+        _mask = buckets - 1;
+    }
+
+    /** Return the side that can force a win from the position on BOARD,
+     *  or null if that is not determined after searching about NODELIMIT
+     *  positions.  Assumes the game is not over on BOARD, which is not
+     *  changed: the search is made on a copy.  If the side to move wins,
+     *  winningMove then returns a move that wins for it. */
+    Side solve(Board board, long nodeLimit) {
+        assert board.getWinner() == null;
+        Board work = new Board(board);
+        work.setNotifier(NO_NOTIFIER);
+        _nodes = 0;
+        _nodeLimit = nodeLimit;
+        _aborted = false;
+        _winningMove = -1;
+        if (_moves == null) {
+            _moves = new int[INITIAL_PLIES][];
+            _childKeys = new long[INITIAL_PLIES][];
+            _sameMover = new boolean[INITIAL_PLIES][];
+        }
+        long numbers = search(work, 0, INFINITY, INFINITY);
+        Side player = work.whoseMove();
+        if (proof(numbers) == 0) {
+            return player;
+        } else if (disproof(numbers) == 0) {
+            return player.opposite();
+        } else {
+            return null;
+        }
+    }
+
+    /** Return a winning move (a square number) for the side to move in
+     *  the position last solved, if solve found that it wins, and
+     *  otherwise -1. */
+    int winningMove() {
+        return _winningMove;
+    }
+
+    /** Return the number of positions searched by the last solve. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Return the number of bytes occupied by my table. */
+    long memoryBytes() {
+        return (long) _keys.length * ENTRY_BYTES;
+    }
+
+    /** Search the position on BOARD, which is PLY moves below the root,
+     *  until its proof number reaches PROOFLIMIT or its disproof number
+     *  reaches DISPROOFLIMIT, or the budget of positions is exhausted.
+     *  Record its numbers in the table and return them (packed as for
+     *  proof and disproof).  BOARD is unchanged on return. */
+    private long search(Board board, int ply, int proofLimit,
+                        int disproofLimit) {
+        _nodes += 1;
+        long nodesBefore = _nodes;
+        long key = AI.positionKey(board);
+        Side player = board.whoseMove();
+        if (board.getWinner() == player) {
+            return store(key, pack(0, INFINITY), 1);
+        } else if (board.getWinner() != null) {
+            return store(key, pack(INFINITY, 0), 1);
+        }
+        int numMoves = expand(board, ply, player);
+        if (numMoves < 0) {
+            if (ply == 0) {
+                _winningMove = -1 - numMoves;
+            }
+            return store(key, pack(0, INFINITY), 1);
+        }
+        int[] moves = _moves[ply];
+        long[] childKeys = _childKeys[ply];
+        boolean[] sameMover = _sameMover[ply];
+        long numbers;
+        while (true) {
+            int proof, disproof, best, bestDisproof, secondProof;
+            proof = secondProof = INFINITY;
+            disproof = bestDisproof = 0;
+            best = -1;
+            for (int k = 0; k < numMoves; k += 1) {
+                long child = lookup(childKeys[k]);
+                if (!sameMover[k]) {
+                    child = swap(child);
+                }
+                int childProof = proof(child);
+                disproof = Math.min(INFINITY, disproof + disproof(child));
+                if (childProof < proof) {
+                    secondProof = proof;
+                    proof = childProof;
+                    bestDisproof = disproof(child);
+                    best = k;
+                } else if (childProof < secondProof) {
+                    secondProof = childProof;
+                }
+            }
+            numbers = pack(proof, disproof);
+            if (proof >= proofLimit || disproof >= disproofLimit
+                || _aborted) {
+                if (ply == 0 && proof == 0) {
+                    _winningMove = moves[best];
+                }
+                break;
+            }
+            if (_nodes >= _nodeLimit) {
+                _aborted = true;
+                break;
+            }
+            int childProofLimit = Math.min(proofLimit, secondProof + 1),
+                childDisproofLimit = (int) Math.min(INFINITY,
+                    (long) disproofLimit + bestDisproof - disproof);
+            board.addSpot(player, moves[best]);
+            if (sameMover[best]) {
+                search(board, ply + 1, childProofLimit, childDisproofLimit);
+            } else {
+                search(board, ply + 1, childDisproofLimit, childProofLimit);
+            }
+            board.undo();
+        }
+        return store(key, numbers, _nodes - nodesBefore + 1);
+    }
+
+    /** Fill _moves[PLY] with the legal moves of PLAYER on BOARD,
+     *  _childKeys[PLY] with the keys of the positions they lead to, and
+     *  _sameMover[PLY] with whether PLAYER is still to move in each, and
+     *  return their number.  If one of them wins the game at once, return
+     *  -1 - that move instead, without generating the rest if
+     *  Board.winningMove finds it. */
+    private int expand(Board board, int ply, Side player) {
+        int numSquares = board.size() * board.size();
+        if (ply == _moves.length) {
+            _moves = Arrays.copyOf(_moves, 2 * ply);
+            _childKeys = Arrays.copyOf(_childKeys, 2 * ply);
+            _sameMover = Arrays.copyOf(_sameMover, 2 * ply);
+        }
+        if (_moves[ply] == null || _moves[ply].length < numSquares) {
+            _moves[ply] = new int[numSquares];
+            _childKeys[ply] = new long[numSquares];
+            _sameMover[ply] = new boolean[numSquares];
+        }
+        int winningMove = board.winningMove(player);
+        if (winningMove >= 0) {
+            return -1 - winningMove;
+        }
+        int[] moves = _moves[ply];
+        long[] childKeys = _childKeys[ply];
+        boolean[] sameMover = _sameMover[ply];
+        int numMoves = board.legalMoves(player, moves);
+        for (int k = 0; k < numMoves; k += 1) {
+            board.addSpot(player, moves[k]);
+            boolean won = board.getWinner() != null;
+            childKeys[k] = AI.positionKey(board);
+            sameMover[k] = board.whoseMove() == player;
+            board.undo();
+            if (won) {
+                return -1 - moves[k];
+            }
+        }
+        return numMoves;
+    }
+
+    /** Return the numbers recorded for the position with key KEY, or
+     *  those of an unsearched position if there are none. */
+    private long lookup(long key) {
+        int i = index(key);
+        for (int j = i; j < i + 2; j += 1) {
+            if (_numbers[j] != 0 && _keys[j] == key) {
+                return _numbers[j];
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /** Record NUMBERS for the position with key KEY, whose search took
+     *  WORK positions, and return NUMBERS.  The first entry of each bucket
+     *  keeps the position that took the most work to search; the second
+     *  holds the most recently stored one. */
+    private long store(long key, long numbers, long work) {
+        int i = index(key);
+        if (_numbers[i] != 0 && _keys[i] != key && work < _work[i]) {
+            i += 1;
+        } else if (_numbers[i] != 0 && _keys[i] != key) {
+            _keys[i + 1] = _keys[i];
+            _numbers[i + 1] = _numbers[i];
+            _work[i + 1] = _work[i];
+        }
+        _keys[i] = key;
+        _numbers[i] = numbers;
+        _work[i] = work;
+        return numbers;
+    }
+
+    /** Return the index of the first entry of the bucket for KEY. */
+    private int index(long key) {
+        return ((int) (key ^ (key >>> 32)) & _mask) << 1;
+    }
+
+    /** Return proof and disproof numbers PROOF and DISPROOF packed into a
+     *  long. */
+    private static long pack(int proof, int disproof) {
+        return ((long) proof << Integer.SIZE) | disproof;
+    }
+
+    /** Return NUMBERS, as packed by pack, with the proof and disproof
+     *  numbers exchanged: the numbers of the same position from the point
+     *  of view of the other side. */
+    private static long swap(long numbers) {
+        return pack(disproof(numbers), proof(numbers));
+    }
+
+    /** Return the proof number in NUMBERS, as packed by pack. */
+    private static int proof(long numbers) {
+        return (int) (numbers >>> Integer.SIZE);
+    }
+
+    /** Return the disproof number in NUMBERS, as packed by pack. */
+    private static int disproof(long numbers) {
+        return (int) numbers;
+    }
+
+    /** A proof or disproof number too large to reach: that of a position
+     *  proven not to be a win (or not to be a loss). */
+    static final int INFINITY = 1 << 30;
+
+    /** Notifier for the boards searched. */
+    private static final Consumer<Board> NO_NOTIFIER = (b) -> { };
+
+    /** The numbers of a position not yet searched. */
+    private static final long UNKNOWN = pack(1, 1);
+
+    /** Number of bytes per entry. */
+    private static final int ENTRY_BYTES = 3 * Long.BYTES;
+
+    /** Initial number of plies for which move lists are allocated. */
+    private static final int INITIAL_PLIES = 64;
+
+    /** Keys of the positions in each entry. */
+    private final long[] _keys;
+    /** Proof and disproof numbers of each entry (packed), or 0 if
+     *  empty. */
+    private final long[] _numbers;
+    /** Number of positions searched to find the numbers of each entry. */
+    private final long[] _work;
+    /** Mask selecting a bucket number from a key. */
+    private final int _mask;
+
+    /** _moves[P] and _childKeys[P] hold the moves from the position being
+     *  searched at ply P and the keys of the positions they lead to. */
+    private int[][] _moves;
+    /** See _moves. */
+    private long[][] _childKeys;
+    /** _sameMover[P][K] is true iff the side to move at ply P is still to
+     *  move after move _moves[P][K]. */
+    private boolean[][] _sameMover;
+
+    /** Number of positions searched by the current solve, and the number
+     *  at which it gives up. */
+    private long _nodes, _nodeLimit;
+
+    /** True iff the current solve has exhausted its budget. */
+    private boolean _aborted;
+
+    /** A winning move from the root of the current solve, or -1. */
+    private int _winningMove;
+}
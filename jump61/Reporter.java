@@ -17,6 +17,9 @@ interface Reporter {
      *  the same meaning as in String.format. */
     void msg(String format, Object... args);
 
+    /** Display the contents of BOARD in the format of Board.toString. */
+    void dump(Board board);
+
     /** Report an error as specified by FORMAT and ARGS, which have
      *  the same meaning as in String.format. */
     void err(String format, Object... args);
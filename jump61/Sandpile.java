@@ -0,0 +1,182 @@
+package jump61;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Formatter;
+import java.util.Random;
+
+import static jump61.Side.*;
+
+/** Drops spots at random on a board, as in a two-colored Abelian sandpile
+ *  model, and records the avalanche (see Board.avalancheSize) that each
+ *  drop causes.  Each drop adds a spot of a randomly chosen side to a
+ *  randomly chosen square, whoever owns it.  A drop after which one side
+ *  owns every square ends a game, which stops its avalanche (see
+ *  Board.addSpot), and the next drop would not topple at all; so after
+ *  such a drop, I reset the board to its starting position (or to an
+ *  empty board, if one side already owned every square of that).
+ *
+ *  For each of the size, duration, and area of the avalanches, I keep a
+ *  histogram whose bin K counts the avalanches for which that quantity
+ *  has K significant bits (so bin 0 counts those with 0, and bin K > 0
+ *  those from 2**(K-1) to 2**K - 1).  I may also write a record of each
+ *  drop to a stream, in a compact binary form: a header consisting of
+ *  the 4 bytes "J61A", the board size as a 4-byte integer, and the seed
+ *  as an 8-byte integer (both most significant byte first), followed by
+ *  one record per drop.  Each record consists of 4 unsigned integers,
+ *  each written 7 bits at a time, least significant first, with the high
+ *  bit of each byte set on all but the last byte: 2N + B, where N is the
+ *  number of the square dropped on and B is 1 if the spot is blue, and
+ *  then the avalanche's size, duration, and area.
+ *  @author Evelyn Vo
+ */
+class Sandpile {
+
+    /** A simulation that drops spots on BOARD, choosing them with a
+     *  random number generator seeded with SEED. */
+    Sandpile(Board board, long seed) {
+        _board = board;
+        _seed = seed;
+        _random = new Random(seed);
+        _board.trackAvalancheArea(true);
+        if (board.getWinner() == null) {
+            _start = new Board(board);
+        } else {
+            _start = new Board(board.size());
+            _board.copy(_start);
+        }
+    }
+
+    /** Drop DROPS spots on my board, adding their avalanches to my
+     *  statistics, and writing a header and a record of each to OUT,
+     *  unless it is null. */
+    void run(long drops, OutputStream out) throws IOException {
+        int numSquares = _board.size() * _board.size();
+        if (out != null) {
+            out.write(MAGIC);
+            writeFixed(out, _board.size(), Integer.BYTES);
+            writeFixed(out, _seed, Long.BYTES);
+        }
+        long start = System.nanoTime();
+        for (long k = 0; k < drops; k += 1) {
+            int n = _random.nextInt(numSquares);
+            boolean blue = _random.nextBoolean();
+            _board.addSpot(blue ? BLUE : RED, n);
+            int size = _board.avalancheSize(),
+                duration = _board.avalancheDuration(),
+                area = _board.avalancheArea();
+            _histograms[SIZE][bin(size)] += 1;
+            _histograms[DURATION][bin(duration)] += 1;
+            _histograms[AREA][bin(area)] += 1;
+            _jumps += size;
+            if (_board.getWinner() != null) {
+                _board.copy(_start);
+                _wins += 1;
+            }
+            if (out != null) {
+                writeVarying(out, 2 * n + (blue ? 1 : 0));
+                writeVarying(out, size);
+                writeVarying(out, duration);
+                writeVarying(out, area);
+            }
+        }
+        _nanos += System.nanoTime() - start;
+        _drops += drops;
+    }
+
+    /** Return the number of spots dropped so far. */
+    long drops() {
+        return _drops;
+    }
+
+    /** Return the number of drops so far that ended a game, after each
+     *  of which I reset the board. */
+    long wins() {
+        return _wins;
+    }
+
+    /** Return the total size of the avalanches so far. */
+    long jumps() {
+        return _jumps;
+    }
+
+    /** Return the number of avalanches so far whose size (if QUANTITY is
+     *  SIZE), duration (DURATION), or area (AREA) falls in bin K of its
+     *  histogram. */
+    long count(int quantity, int k) {
+        return _histograms[quantity][k];
+    }
+
+    /** Return the histogram bin of the avalanche quantity X. */
+    static int bin(int x) {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(x);
+    }
+
+    /** Write a summary of my statistics to OUT: throughput, followed by
+     *  the non-empty bins of my histograms. */
+    void report(Formatter out) {
+        double seconds = Math.max(_nanos, 1) * 1e-9;
+        out.format("%d drops, %d jumps in %.2f s: %.0f drops/s,"
+                   + " %.0f jumps/s%n", _drops, _jumps, seconds,
+                   _drops / seconds, _jumps / seconds);
+        if (_wins > 0) {
+            out.format("%d wins (board reset after each)%n", _wins);
+        }
+        out.format("%12s %12s %12s %12s", "at least", "size", "duration",
+                   "area");
+        for (int k = 0; k < NUM_BINS; k += 1) {
+            if (count(SIZE, k) + count(DURATION, k) + count(AREA, k) > 0) {
+                out.format("%n%12d %12d %12d %12d",
+                           k == 0 ? 0 : 1L << (k - 1), count(SIZE, k),
+                           count(DURATION, k), count(AREA, k));
+            }
+        }
+    }
+
+    /** Write the low BYTES bytes of X to OUT, most significant first. */
+    private static void writeFixed(OutputStream out, long x, int bytes)
+        throws IOException {
+        for (int k = bytes - 1; k >= 0; k -= 1) {
+            out.write((int) (x >>> (Byte.SIZE * k)));
+        }
+    }
+
+    /** Write X >= 0 to OUT 7 bits at a time, as described above. */
+    private static void writeVarying(OutputStream out, int x)
+        throws IOException {
+        while ((x & ~LOW_BITS) != 0) {
+            out.write((x & LOW_BITS) | MORE_BIT);
+            x >>>= 7;
+        }
+        out.write(x);
+    }
+
+    /** Indices of the histograms of avalanche size, duration, and area. */
+    static final int SIZE = 0, DURATION = 1, AREA = 2;
+
+    /** Number of bins in each histogram. */
+    static final int NUM_BINS = Integer.SIZE + 1;
+
+    /** The first bytes of a stream of drop records. */
+    private static final byte[] MAGIC = { 'J', '6', '1', 'A' };
+
+    /** The bits of a byte of a varying-length integer holding its value,
+     *  and the bit marking all but its last byte. */
+    private static final int LOW_BITS = 0x7f, MORE_BIT = 0x80;
+
+    /** The board on which I drop spots. */
+    private final Board _board;
+    /** The position to which I reset my board after a win. */
+    private final Board _start;
+    /** The seed of _random. */
+    private final long _seed;
+    /** Chooses the squares and sides of the drops. */
+    private final Random _random;
+    /** _histograms[Q][K] is the number of avalanches whose quantity Q
+     *  (SIZE, DURATION, or AREA) falls in bin K. */
+    private final long[][] _histograms = new long[AREA + 1][NUM_BINS];
+    /** Numbers of drops, of jumps, and of wins so far. */
+    private long _drops, _jumps, _wins;
+    /** Time spent dropping so far, in nanoseconds. */
+    private long _nanos;
+}
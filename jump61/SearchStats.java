@@ -0,0 +1,133 @@
+package jump61;
+
+/** Statistics of one AI search for a move, for diagnosing how its time
+ *  was spent.  The counts are totals over all threads of the search.
+ *  @author Evelyn Vo
+ */
+class SearchStats {
+
+    /** Statistics of a search for a move by SIDE that completed DEPTH
+     *  plies in NANOS nanoseconds of wall time with THREADS threads,
+     *  visiting NODES positions, of which EVALS were evaluated statically.
+     *  Of the positions whose moves were tried, CUTOFFS were cut off,
+     *  FIRSTCUTOFFS of them by the first move tried.  There were PROBES
+     *  probes of the transposition table, HITS of which found their
+     *  position.  The longest cascade caused by a move searched had
+     *  MAXCASCADE jumps. */
+    SearchStats(Side side, int depth, long nanos, int threads, long nodes,
+                long evals, long cutoffs, long firstCutoffs, long probes,
+                long hits, int maxCascade) {
+        _side = side;
+        _depth = depth;
+        _nanos = nanos;
+        _threads = threads;
+        _nodes = nodes;
+        _evals = evals;
+        _cutoffs = cutoffs;
+        _firstCutoffs = firstCutoffs;
+        _probes = probes;
+        _hits = hits;
+        _maxCascade = maxCascade;
+    }
+
+    /** Return the side that searched. */
+    Side side() {
+        return _side;
+    }
+
+    /** Return the depth of the deepest iteration completed, or 0 if the
+     *  move was proven to win by ProofSolver, whose positions are then
+     *  those counted by nodes. */
+    int depth() {
+        return _depth;
+    }
+
+    /** Return the wall time of the search in nanoseconds. */
+    long nanos() {
+        return _nanos;
+    }
+
+    /** Return the number of threads that searched. */
+    int threads() {
+        return _threads;
+    }
+
+    /** Return the number of positions visited. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Return the number of positions evaluated statically (the leaves of
+     *  the search). */
+    long evals() {
+        return _evals;
+    }
+
+    /** Return the number of positions whose remaining moves were cut off
+     *  (beta cutoffs). */
+    long cutoffs() {
+        return _cutoffs;
+    }
+
+    /** Return the number of cutoffs caused by the first move tried. */
+    long firstCutoffs() {
+        return _firstCutoffs;
+    }
+
+    /** Return the fraction of cutoffs caused by the first move tried, or 0
+     *  if there were none.  The closer to 1, the better the move
+     *  ordering. */
+    double firstCutoffRate() {
+        return _cutoffs == 0 ? 0.0 : (double) _firstCutoffs / _cutoffs;
+    }
+
+    /** Return the number of transposition-table probes. */
+    long probes() {
+        return _probes;
+    }
+
+    /** Return the number of transposition-table probes that found their
+     *  position. */
+    long hits() {
+        return _hits;
+    }
+
+    /** Return the number of jumps in the longest cascade caused by a move
+     *  searched. */
+    int maxCascade() {
+        return _maxCascade;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: depth %d, %d nodes (%d threads), %d ms,"
+                             + " %d evals, %d cutoffs (%.1f%% by first"
+                             + " move), %d table probes (%.1f%% hits),"
+                             + " longest cascade %d",
+                             _side, _depth, _nodes, _threads,
+                             _nanos / NANOS_PER_MILLI, _evals, _cutoffs,
+                             100.0 * firstCutoffRate(), _probes,
+                             _probes == 0 ? 0.0 : 100.0 * _hits / _probes,
+                             _maxCascade);
+    }
+
+    /** Nanoseconds per millisecond. */
+    private static final long NANOS_PER_MILLI = 1000000;
+
+    /** The side that searched. */
+    private final Side _side;
+    /** Depth of the deepest iteration completed. */
+    private final int _depth;
+    /** Wall time in nanoseconds. */
+    private final long _nanos;
+    /** Number of threads that searched. */
+    private final int _threads;
+    /** Numbers of positions visited and evaluated statically. */
+    private final long _nodes, _evals;
+    /** Number of cutoffs, and of those caused by the first move tried. */
+    private final long _cutoffs, _firstCutoffs;
+    /** Number of table probes, and of those that found their position. */
+    private final long _probes, _hits;
+    /** Jumps in the longest cascade caused by a move searched. */
+    private final int _maxCascade;
+}
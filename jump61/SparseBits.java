@@ -0,0 +1,58 @@
+package jump61;
+
+/** A set of square numbers, represented as a mask (see Geometry) whose
+ *  words are allocated in blocks as they are first needed, so that the
+ *  storage it uses is proportional to the range of squares it has held.
+ *  @author Evelyn Vo
+ */
+class SparseBits {
+
+    /** Add N >= 0 to me, returning true iff it was not already present. */
+    boolean add(int n) {
+        int b = n >>> BLOCK_SHIFT;
+        if (b >= _blocks.length) {
+            long[][] blocks = new long[Math.max(b + 1, 2 * _blocks.length)][];
+            System.arraycopy(_blocks, 0, blocks, 0, _blocks.length);
+            _blocks = blocks;
+        }
+        long[] block = _blocks[b];
+        if (block == null) {
+            block = _blocks[b] = new long[BLOCK_WORDS];
+        }
+        int w = (n >>> WORD_SHIFT) & (BLOCK_WORDS - 1);
+        long bit = 1L << n;
+        if ((block[w] & bit) != 0) {
+            return false;
+        }
+        block[w] |= bit;
+        return true;
+    }
+
+    /** Remove N from me, if present. */
+    void remove(int n) {
+        int b = n >>> BLOCK_SHIFT;
+        if (b < _blocks.length && _blocks[b] != null) {
+            _blocks[b][(n >>> WORD_SHIFT) & (BLOCK_WORDS - 1)] &= ~(1L << n);
+        }
+    }
+
+    /** Return true iff N is present. */
+    boolean contains(int n) {
+        int b = n >>> BLOCK_SHIFT;
+        return b < _blocks.length && _blocks[b] != null
+            && (_blocks[b][(n >>> WORD_SHIFT) & (BLOCK_WORDS - 1)]
+                & (1L << n)) != 0;
+    }
+
+    /** Log2 of the number of bits in a word. */
+    private static final int WORD_SHIFT = 6;
+    /** Log2 of the number of squares whose bits are in a block. */
+    private static final int BLOCK_SHIFT = 12;
+    /** Number of words in a block. */
+    private static final int BLOCK_WORDS = 1 << (BLOCK_SHIFT - WORD_SHIFT);
+
+    /** My blocks, of BLOCK_WORDS words each, or null if not yet needed:
+     *  bit N % 64 of word (N / 64) % BLOCK_WORDS of _blocks[N / 4096] is
+     *  set iff N is present. */
+    private long[][] _blocks = new long[0][];
+}
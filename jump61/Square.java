@@ -10,6 +10,15 @@ class Square {
     /** A Square on the initial board. */
     static final Square INITIAL = new Square(Side.WHITE, 1);
 
+    /** Number of low-order bits of a packed code holding the Side. */
+    static final int SPOTS_SHIFT = 2;
+
+    /** Mask extracting the Side ordinal from a packed code. */
+    static final int SIDE_MASK = (1 << SPOTS_SHIFT) - 1;
+
+    /** The packed code of INITIAL. */
+    static final int INITIAL_CODE = 1 << SPOTS_SHIFT;
+
     /** A new Square occupied by SIDE and containing SPOTS spots. This is
      *  private, since clients will use the factory method .square to
      *  avoid creation of redundant objects. */
@@ -26,10 +35,39 @@ class Square {
         if (spots == 0 || side == WHITE) {
             return INITIAL;
         }
-        if (_allSquares[side.ordinal()][spots] == null) {
-            _allSquares[side.ordinal()][spots] = new Square(side, spots);
+        return ALL_SQUARES[side.ordinal()][spots];
+    }
+
+    /** Return the Square whose packed code (as returned by .code()) is
+     *  CODE. */
+    static Square fromCode(int code) {
+        return square(sideOf(code), spotsOf(code));
+    }
+
+    /** Return the packed code for a Square controlled by SIDE with SPOTS
+     *  spots: the spot count in the upper bits and the ordinal of SIDE in
+     *  the low SPOTS_SHIFT bits.  As for .square, a WHITE or empty square
+     *  packs to the code of INITIAL. */
+    static int code(Side side, int spots) {
+        if (spots == 0 || side == WHITE) {
+            return INITIAL_CODE;
         }
-        return _allSquares[side.ordinal()][spots];
+        return (spots << SPOTS_SHIFT) | side.ordinal();
+    }
+
+    /** Return the Side encoded in packed code CODE. */
+    static Side sideOf(int code) {
+        return SIDES[code & SIDE_MASK];
+    }
+
+    /** Return the number of spots encoded in packed code CODE. */
+    static int spotsOf(int code) {
+        return code >>> SPOTS_SHIFT;
+    }
+
+    /** Return my packed code. */
+    int code() {
+        return code(_side, _spots);
     }
 
     /** Return the Side controlling this Square. */
@@ -46,9 +84,21 @@ class Square {
      * necessary to override .equals and .hashCode; the default implementations
      * work. */
 
+    /** The Sides, indexed by ordinal. */
+    private static final Side[] SIDES = Side.values();
+
     /** Memo table for Squares, allowing spot values up to 9
-     *  (probably excessive). */
-    private static Square[][] _allSquares = new Square[3][10];
+     *  (probably excessive).  It is filled in advance, so that searches
+     *  running in parallel may share it. */
+    private static final Square[][] ALL_SQUARES = new Square[3][10];
+
+    static {
+        for (Side side : SIDES) {
+            for (int spots = 1; spots < ALL_SQUARES[0].length; spots += 1) {
+                ALL_SQUARES[side.ordinal()][spots] = new Square(side, spots);
+            }
+        }
+    }
 
     /** The Side occupying this Square. */
     private final Side _side;
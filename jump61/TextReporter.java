@@ -2,6 +2,8 @@
  * University of California.  All rights reserved. */
 package jump61;
 
+import java.util.Formatter;
+
 /** An object that formats and sends messages and errors.
  *  @author P. N. Hilfinger
  */
@@ -23,6 +25,14 @@ class TextReporter implements Reporter {
         System.out.println();
     }
 
+    @Override
+    public void dump(Board board) {
+        Formatter out = new Formatter(System.out);
+        board.dump(out);
+        out.format("%n");
+        out.flush();
+    }
+
     @Override
     public void err(String format, Object... args) {
         System.err.printf(format, args);
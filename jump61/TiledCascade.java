@@ -0,0 +1,458 @@
+package jump61;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/** Resolves the waves of large cascades in parallel, for Boards that
+ *  use it (see Board.setCascade).
+ *
+ *  A Board resolves a cascade with a first-in-first-out queue of squares
+ *  to jump.  The squares added to the queue by the jumps of one wave of
+ *  entries form the next wave, and the jumps of a wave may affect each
+ *  other, since a jump adds spots to squares that later entries of the
+ *  same wave jump.  To resolve a wave in parallel, the board is divided
+ *  into square tiles.  Each tile replays, in queue order, the entries of
+ *  the wave that lie in it, together with the jumps of the entries just
+ *  outside it (its halo) that spill into it.  Whether a halo entry jumps
+ *  is decided by a neighboring tile, so the tiles are replayed in rounds:
+ *  each round uses the halo jumps found by the previous one (none, at
+ *  first), and only tiles whose halo changed are replayed again.  Jumps
+ *  only affect later entries, so the earliest entry decided wrongly in
+ *  one round is decided rightly in the next, and once a round changes
+ *  nothing, the result is exactly that of jumping the entries one at a
+ *  time.
+ *
+ *  A Board stops its cascade as soon as one side holds every square,
+ *  which may happen in the middle of a wave.  Once that happens, every
+ *  further jump only adds spots of that side, so such a wave also ends
+ *  with one side holding every square.  Those waves are left to the
+ *  Board to replay one jump at a time.
+ *  @author Evelyn Vo
+ */
+class TiledCascade {
+
+    /** A TiledCascade that uses THREADS threads, tiles of the default
+     *  size, and resolves only waves of at least the default number of
+     *  entries. */
+    TiledCascade(int threads) {
+        this(threads, DEFAULT_TILE_SIZE, DEFAULT_MIN_WAVE);
+    }
+
+    /** A TiledCascade that uses THREADS >= 1 threads and tiles of
+     *  TILESIZE >= 2 squares on a side, and resolves only waves of at
+     *  least MINWAVE entries. */
+    TiledCascade(int threads, int tileSize, int minWave) {
+        _threads = threads;
+        _tileSize = tileSize;
+        _minWave = minWave;
+        _pool = new ForkJoinPool(threads);
+    }
+
+    /** Return the smallest number of entries in a wave that I resolve. */
+    int minWave() {
+        return _minWave;
+    }
+
+    /** Resolve a wave of a cascade on BOARD, in which the squares
+     *  WAVE[0 .. M-1] jump in that order, as described for Board.jump.
+     *  Returns false if at the end of the wave one side would hold every
+     *  square.  Otherwise returns true and makes the results available
+     *  through numChanged, changedSquare, changedCode, and fired.  Does
+     *  not modify BOARD or WAVE. */
+    boolean resolve(Board board, int[] wave, int m) {
+        _board = board;
+        _wave = wave;
+        _size = board.size();
+        setUpTiles(m);
+        _sides = new byte[][] { new byte[m], new byte[m], new byte[m] };
+        for (int round = 0;; round += 1) {
+            _round = round;
+            runRound();
+            boolean changed = false;
+            for (int k = 0; k < _numActive; k += 1) {
+                changed |= _tileChanged[_active[k]];
+            }
+            if (!changed) {
+                _fired = _sides[round % _sides.length];
+                break;
+            }
+        }
+        int total, redDelta, blueDelta;
+        total = redDelta = blueDelta = 0;
+        for (int k = 0; k < _numActive; k += 1) {
+            int t = _active[k];
+            total += _tileCounts[t];
+            redDelta += _tileRedDeltas[t];
+            blueDelta += _tileBlueDeltas[t];
+        }
+        int numSquares = _size * _size;
+        if (board.numOfSide(Side.RED) + redDelta == numSquares
+            || board.numOfSide(Side.BLUE) + blueDelta == numSquares) {
+            return false;
+        }
+        _changedSquares = new int[total];
+        _changedCodes = new byte[total];
+        _numChanged = 0;
+        for (int k = 0; k < _numActive; k += 1) {
+            int t = _active[k];
+            System.arraycopy(_tileSquares[t], 0, _changedSquares,
+                             _numChanged, _tileCounts[t]);
+            System.arraycopy(_tileCodes[t], 0, _changedCodes,
+                             _numChanged, _tileCounts[t]);
+            _numChanged += _tileCounts[t];
+        }
+        return true;
+    }
+
+    /** Return the number of squares changed by the last wave resolved. */
+    int numChanged() {
+        return _numChanged;
+    }
+
+    /** Return the number of the K-th square changed by the last wave
+     *  resolved. */
+    int changedSquare(int k) {
+        return _changedSquares[k];
+    }
+
+    /** Return the packed code with which the last wave resolved leaves
+     *  changedSquare(K). */
+    int changedCode(int k) {
+        return _changedCodes[k];
+    }
+
+    /** Return true iff entry #I of the last wave resolved jumped. */
+    boolean fired(int i) {
+        return _fired[i] != 0;
+    }
+
+    /** Distribute the M entries of the wave among the tiles they affect,
+     *  setting _relevant, _tileStart, and _active. */
+    private void setUpTiles(int m) {
+        _tilesPerSide = (_size + _tileSize - 1) / _tileSize;
+        int numTiles = _tilesPerSide * _tilesPerSide;
+        if (_tileStart == null || _tileStart.length != numTiles + 1) {
+            _tileStart = new int[numTiles + 1];
+            _tileChanged = new boolean[numTiles];
+            _tileCounts = new int[numTiles];
+            _tileRedDeltas = new int[numTiles];
+            _tileBlueDeltas = new int[numTiles];
+            _tileSquares = new int[numTiles][];
+            _tileCodes = new byte[numTiles][];
+            _active = new int[numTiles];
+        }
+        int[] fill = new int[numTiles + 1];
+        int last = _size - 1;
+        for (int pass = 0; pass < 2; pass += 1) {
+            boolean record = pass == 1;
+            for (int i = 0; i < m; i += 1) {
+                int r = _wave[i] / _size, c = _wave[i] - r * _size;
+                int tr = r / _tileSize, tc = c / _tileSize,
+                    t = tr * _tilesPerSide + tc;
+                addRelevant(t, i << 1, fill, record);
+                if (r > 0 && r == tr * _tileSize) {
+                    addRelevant(t - _tilesPerSide, (i << 1) | 1, fill,
+                                record);
+                }
+                if (c > 0 && c == tc * _tileSize) {
+                    addRelevant(t - 1, (i << 1) | 1, fill, record);
+                }
+                if (c < last && c + 1 == (tc + 1) * _tileSize) {
+                    addRelevant(t + 1, (i << 1) | 1, fill, record);
+                }
+                if (r < last && r + 1 == (tr + 1) * _tileSize) {
+                    addRelevant(t + _tilesPerSide, (i << 1) | 1, fill,
+                                record);
+                }
+            }
+            if (!record) {
+                int total;
+                total = 0;
+                for (int t = 0; t < numTiles; t += 1) {
+                    _tileStart[t] = total;
+                    total += fill[t];
+                    fill[t] = _tileStart[t];
+                }
+                _tileStart[numTiles] = total;
+                if (_relevant == null || _relevant.length < total) {
+                    _relevant = new int[total];
+                }
+            }
+        }
+        _numActive = 0;
+        for (int t = 0; t < numTiles; t += 1) {
+            _tileCounts[t] = _tileRedDeltas[t] = _tileBlueDeltas[t] = 0;
+            if (_tileStart[t + 1] > _tileStart[t]) {
+                _active[_numActive] = t;
+                _numActive += 1;
+            }
+        }
+    }
+
+    /** Count ENTRY (see _relevant) as affecting tile T, where FILL[T] is
+     *  the number of entries counted for T so far, or, if RECORD, the
+     *  position in _relevant of its next entry. */
+    private void addRelevant(int t, int entry, int[] fill, boolean record) {
+        if (record) {
+            _relevant[fill[t]] = entry;
+        }
+        fill[t] += 1;
+    }
+
+    /** Replay the active tiles that need it for round _round, in
+     *  parallel. */
+    private void runRound() {
+        int numTasks = Math.min(_numActive, TASKS_PER_THREAD * _threads);
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[numTasks];
+        for (int j = 0; j < numTasks; j += 1) {
+            int from = (int) ((long) _numActive * j / numTasks),
+                to = (int) ((long) _numActive * (j + 1) / numTasks);
+            tasks[j] = _pool.submit(() -> new Replayer().replay(from, to));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    /** Replays tiles for one thread, holding its working storage. */
+    private class Replayer {
+
+        /** Replay the tiles _active[FROM .. TO-1] that need it in the
+         *  current round. */
+        void replay(int from, int to) {
+            byte[] out = _sides[_round % _sides.length],
+                in = _sides[(_round + 2) % _sides.length],
+                older = _sides[(_round + 1) % _sides.length];
+            for (int k = from; k < to; k += 1) {
+                int t = _active[k];
+                if (_round == 0 || haloChanged(t, in, older)) {
+                    replayTile(t, in, out);
+                } else {
+                    for (int j = _tileStart[t]; j < _tileStart[t + 1];
+                         j += 1) {
+                        int i = _relevant[j] >>> 1;
+                        if ((_relevant[j] & 1) == 0) {
+                            out[i] = in[i];
+                        }
+                    }
+                    _tileChanged[t] = false;
+                }
+            }
+        }
+
+        /** Return true iff the jumps of the halo entries of tile T differ
+         *  between IN and OLDER. */
+        private boolean haloChanged(int t, byte[] in, byte[] older) {
+            for (int j = _tileStart[t]; j < _tileStart[t + 1]; j += 1) {
+                int i = _relevant[j] >>> 1;
+                if ((_relevant[j] & 1) == 1 && in[i] != older[i]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /** Replay the wave on tile T, taking the jumps of its halo entries
+         *  from IN, and recording the jumps of its own entries in OUT and
+         *  the contents it leaves in the tile's results. */
+        private void replayTile(int t, byte[] in, byte[] out) {
+            _epoch += 1;
+            _numLoaded = 0;
+            _row0 = (t / _tilesPerSide) * _tileSize;
+            _col0 = (t % _tilesPerSide) * _tileSize;
+            boolean changed = false;
+            int last = _size - 1;
+            for (int j = _tileStart[t]; j < _tileStart[t + 1]; j += 1) {
+                int i = _relevant[j] >>> 1, n = _wave[i];
+                int r = n / _size, c = n - r * _size;
+                int lr = r - _row0, lc = c - _col0;
+                int side;
+                if ((_relevant[j] & 1) == 0) {
+                    int code = load(n, lr, lc);
+                    int neighbors = Geometry.MAX_NEIGHBORS
+                        - (r == 0 ? 1 : 0) - (r == last ? 1 : 0)
+                        - (c == 0 ? 1 : 0) - (c == last ? 1 : 0);
+                    if (Square.spotsOf(code) > neighbors) {
+                        side = code & Square.SIDE_MASK;
+                        _codes[lr * _tileSize + lc] =
+                            (byte) Square.code(SIDES[side], 1);
+                    } else {
+                        side = 0;
+                    }
+                    changed |= in[i] != side;
+                    out[i] = (byte) side;
+                } else {
+                    side = in[i];
+                }
+                if (side != 0) {
+                    if (r > 0) {
+                        spill(n - _size, lr - 1, lc, side);
+                    }
+                    if (c > 0) {
+                        spill(n - 1, lr, lc - 1, side);
+                    }
+                    if (c < last) {
+                        spill(n + 1, lr, lc + 1, side);
+                    }
+                    if (r < last) {
+                        spill(n + _size, lr + 1, lc, side);
+                    }
+                }
+            }
+            _tileChanged[t] = changed;
+            saveResults(t);
+        }
+
+        /** Record the squares of tile T changed by its replay in its
+         *  results. */
+        private void saveResults(int t) {
+            if (_tileSquares[t] == null
+                || _tileSquares[t].length < _numLoaded) {
+                _tileSquares[t] = new int[_numLoaded];
+                _tileCodes[t] = new byte[_numLoaded];
+            }
+            int count, redDelta, blueDelta;
+            count = redDelta = blueDelta = 0;
+            for (int k = 0; k < _numLoaded; k += 1) {
+                int n = _loaded[k];
+                int r = n / _size, c = n - r * _size;
+                int oldCode = _board.code(n),
+                    newCode = _codes[(r - _row0) * _tileSize + c - _col0];
+                if (oldCode != newCode) {
+                    _tileSquares[t][count] = n;
+                    _tileCodes[t][count] = (byte) newCode;
+                    count += 1;
+                    redDelta += sideCount(newCode, RED_ORDINAL)
+                        - sideCount(oldCode, RED_ORDINAL);
+                    blueDelta += sideCount(newCode, BLUE_ORDINAL)
+                        - sideCount(oldCode, BLUE_ORDINAL);
+                }
+            }
+            _tileCounts[t] = count;
+            _tileRedDeltas[t] = redDelta;
+            _tileBlueDeltas[t] = blueDelta;
+        }
+
+        /** Add a spot of the side with ordinal SIDE to square #N, which is
+         *  at row LR and column LC relative to the tile being replayed, if
+         *  it is in the tile. */
+        private void spill(int n, int lr, int lc, int side) {
+            if (0 <= lr && lr < _tileSize && 0 <= lc && lc < _tileSize) {
+                int spots = Square.spotsOf(load(n, lr, lc));
+                _codes[lr * _tileSize + lc] =
+                    (byte) Square.code(SIDES[side], spots + 1);
+            }
+        }
+
+        /** Return the current code of square #N, which is at row LR and
+         *  column LC relative to the tile being replayed, taking it from the
+         *  board the first time. */
+        private int load(int n, int lr, int lc) {
+            int l = lr * _tileSize + lc;
+            if (_stamps[l] != _epoch) {
+                _stamps[l] = _epoch;
+                _codes[l] = (byte) _board.code(n);
+                _loaded[_numLoaded] = n;
+                _numLoaded += 1;
+            }
+            return _codes[l];
+        }
+
+        /** Current contents of the loaded squares of the tile being
+         *  replayed, indexed by local. */
+        private final byte[] _codes = new byte[_tileSize * _tileSize];
+        /** _stamps[L] == _epoch iff local square L has been loaded during
+         *  the current replay. */
+        private final int[] _stamps = new int[_tileSize * _tileSize];
+        /** The squares loaded during the current replay. */
+        private final int[] _loaded = new int[_tileSize * _tileSize];
+        /** Number of valid entries in _loaded. */
+        private int _numLoaded;
+        /** Number of the current replay. */
+        private int _epoch;
+        /** Row and column (from 0) of the first square of the tile being
+         *  replayed. */
+        private int _row0, _col0;
+    }
+
+    /** Return 1 if packed code CODE denotes a square of SIDE, else 0. */
+    private static int sideCount(int code, int side) {
+        return (code & Square.SIDE_MASK) == side ? 1 : 0;
+    }
+
+    /** The Sides, indexed by ordinal. */
+    private static final Side[] SIDES = Side.values();
+
+    /** Ordinals of RED and BLUE. */
+    private static final int
+        RED_ORDINAL = Side.RED.ordinal(),
+        BLUE_ORDINAL = Side.BLUE.ordinal();
+
+    /** Default number of squares on a side of a tile. */
+    static final int DEFAULT_TILE_SIZE = 64;
+
+    /** Default smallest wave resolved in parallel. */
+    static final int DEFAULT_MIN_WAVE = 4096;
+
+    /** Number of tasks per thread among which each round's tiles are
+     *  divided, to balance the load. */
+    private static final int TASKS_PER_THREAD = 4;
+
+    /** Number of threads I use. */
+    private final int _threads;
+    /** Number of squares on a side of a tile. */
+    private final int _tileSize;
+    /** Smallest number of entries in a wave that I resolve. */
+    private final int _minWave;
+    /** The threads I use. */
+    private final ForkJoinPool _pool;
+
+    /** The board whose wave is being resolved, its size, and the
+     *  wave. */
+    private Board _board;
+    /** See _board. */
+    private int _size;
+    /** See _board. */
+    private int[] _wave;
+
+    /** Number of tiles on a side of the board. */
+    private int _tilesPerSide;
+    /** The entries affecting tile T are _relevant[_tileStart[T] ..
+     *  _tileStart[T + 1] - 1], in order: 2I for entry #I of the wave if
+     *  it is in the tile, and 2I + 1 if it is in the tile's halo. */
+    private int[] _relevant, _tileStart;
+    /** The tiles affected by the wave, in order, in _active[0 ..
+     *  _numActive - 1]. */
+    private int[] _active;
+    /** See _active. */
+    private int _numActive;
+
+    /** The current round. */
+    private int _round;
+    /** Entry I of the wave jumped as a square of the side with ordinal
+     *  _sides[R % 3][I] in round R, or not at all if that is 0.  Round R
+     *  reads round R - 1's array and compares it to round R - 2's. */
+    private byte[][] _sides;
+    /** The final array of _sides. */
+    private byte[] _fired;
+
+    /** Results of the last replay of each tile: whether any of its
+     *  entries jumped differently from the round before, and its
+     *  _tileCounts[T] changed squares and their codes, and the resulting
+     *  changes in the numbers of red and blue squares. */
+    private boolean[] _tileChanged;
+    /** See _tileChanged. */
+    private int[] _tileCounts, _tileRedDeltas, _tileBlueDeltas;
+    /** See _tileChanged. */
+    private int[][] _tileSquares;
+    /** See _tileChanged. */
+    private byte[][] _tileCodes;
+
+    /** The squares changed by the last wave resolved, and their final
+     *  codes. */
+    private int[] _changedSquares;
+    /** See _changedSquares. */
+    private byte[] _changedCodes;
+    /** Number of valid entries in _changedSquares. */
+    private int _numChanged;
+}
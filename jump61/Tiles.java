@@ -0,0 +1,149 @@
+package jump61;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+import static jump61.Square.INITIAL_CODE;
+
+/** The packed codes (see Square.code) of the squares of a large board,
+ *  stored sparsely.  The board is divided into tiles of TILE_SIZE x
+ *  TILE_SIZE squares.  A tile is allocated only when one of its squares
+ *  leaves the initial state (Square.INITIAL), and released when all of
+ *  them return to it, so that the storage used is proportional to the
+ *  area of the board in use.
+ *
+ *  Copies of a Tiles share its tiles until either modifies them (copy on
+ *  write), so that copying takes time proportional to the number of
+ *  tiles, rather than of squares.
+ *  @author Evelyn Vo
+ */
+class Tiles {
+
+    /** The squares of an N x N board in initial state. */
+    Tiles(int N) {
+        _size = N;
+        _tilesPerSide = (N + TILE_SIZE - 1) >> TILE_SHIFT;
+        int numTiles = _tilesPerSide * _tilesPerSide;
+        _tiles = new byte[numTiles][];
+        _counts = new int[numTiles];
+        _shared = new boolean[numTiles];
+    }
+
+    /** A copy of TILES, sharing its tiles. */
+    Tiles(Tiles tiles) {
+        _size = tiles._size;
+        _tilesPerSide = tiles._tilesPerSide;
+        _tiles = tiles._tiles.clone();
+        _counts = tiles._counts.clone();
+        _shared = new boolean[_tiles.length];
+        for (int t = 0; t < _tiles.length; t += 1) {
+            if (_tiles[t] != null) {
+                _shared[t] = tiles._shared[t] = true;
+            }
+        }
+    }
+
+    /** Return the number of rows and of columns of my board. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the packed code of square #N. */
+    int get(int n) {
+        int r = n / _size, c = n - r * _size;
+        byte[] tile = _tiles[tileOf(r, c)];
+        return tile == null ? INITIAL_CODE : tile[offsetOf(r, c)];
+    }
+
+    /** Set the packed code of square #N to CODE. */
+    void set(int n, int code) {
+        int r = n / _size, c = n - r * _size, t = tileOf(r, c);
+        byte[] tile = _tiles[t];
+        if (tile == null) {
+            if (code == INITIAL_CODE) {
+                return;
+            }
+            tile = _tiles[t] = new byte[TILE_SIZE * TILE_SIZE];
+            Arrays.fill(tile, (byte) INITIAL_CODE);
+        } else if (_shared[t]) {
+            tile = _tiles[t] = tile.clone();
+            _shared[t] = false;
+        }
+        int k = offsetOf(r, c), old = tile[k];
+        tile[k] = (byte) code;
+        if (old == INITIAL_CODE) {
+            _counts[t] += 1;
+        }
+        if (code == INITIAL_CODE) {
+            _counts[t] -= 1;
+            if (_counts[t] == 0) {
+                _tiles[t] = null;
+                _shared[t] = false;
+            }
+        }
+    }
+
+    /** Call ACTION on the number of each square that is not in the initial
+     *  state, taking time proportional to the number of allocated tiles
+     *  and of tiles in all. */
+    void forEachChanged(IntConsumer action) {
+        for (int t = 0; t < _tiles.length; t += 1) {
+            byte[] tile = _tiles[t];
+            if (tile != null) {
+                int r0 = (t / _tilesPerSide) << TILE_SHIFT,
+                    c0 = (t % _tilesPerSide) << TILE_SHIFT;
+                for (int k = 0; k < tile.length; k += 1) {
+                    if (tile[k] != INITIAL_CODE) {
+                        action.accept((r0 + (k >> TILE_SHIFT)) * _size
+                                      + c0 + (k & (TILE_SIZE - 1)));
+                    }
+                }
+            }
+        }
+    }
+
+    /** Return the number of tiles allocated. */
+    int allocatedTiles() {
+        int count;
+        count = 0;
+        for (byte[] tile : _tiles) {
+            if (tile != null) {
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    /** Return the number of the tile containing the square at row R,
+     *  column C (numbering from 0). */
+    private int tileOf(int r, int c) {
+        return (r >> TILE_SHIFT) * _tilesPerSide + (c >> TILE_SHIFT);
+    }
+
+    /** Return the index in its tile of the square at row R, column C
+     *  (numbering from 0). */
+    private static int offsetOf(int r, int c) {
+        return ((r & (TILE_SIZE - 1)) << TILE_SHIFT) | (c & (TILE_SIZE - 1));
+    }
+
+    /** Log2 of the number of squares on a side of a tile. */
+    static final int TILE_SHIFT = 6;
+
+    /** The number of squares on a side of a tile. */
+    static final int TILE_SIZE = 1 << TILE_SHIFT;
+
+    /** Number of rows and of columns of my board. */
+    private final int _size;
+    /** Number of tiles in a row and in a column of my board. */
+    private final int _tilesPerSide;
+    /** The codes of the squares of each tile, by row and then column
+     *  within the tile, or null if all are initial.  Tiles are numbered by
+     *  rows of tiles. */
+    private final byte[][] _tiles;
+    /** _counts[T] is the number of squares of tile T not in the initial
+     *  state. */
+    private final int[] _counts;
+    /** _shared[T] is true iff tile T may be shared with another Tiles, so
+     *  that it must be copied before being modified. */
+    private final boolean[] _shared;
+}
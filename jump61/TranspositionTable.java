@@ -0,0 +1,130 @@
+package jump61;
+
+/** A fixed-size table of previously searched positions, indexed by
+ *  position key (see Board.zobrist).  For each position it records the
+ *  depth to which it was searched, the value found, whether that value is
+ *  exact or only a lower or upper bound, and the best move found.
+ *
+ *  The table is organized in buckets of two entries.  The first entry of
+ *  each bucket keeps the most deeply searched position that hashes there;
+ *  the second always holds the most recently stored one.
+ *
+ *  A table may be shared by threads searching in parallel without
+ *  locking.  Each entry stores its key XORed with its data, so that an
+ *  entry torn by simultaneous stores fails to match either key and is
+ *  treated as empty.
+ *  @author Evelyn Vo
+ */
+class TranspositionTable {
+
+    /** Bound type of a value that is exact. */
+    static final int EXACT = 1;
+    /** Bound type of a value that is a lower bound (search failed high). */
+    static final int LOWER = 2;
+    /** Bound type of a value that is an upper bound (search failed low). */
+    static final int UPPER = 3;
+
+    /** A table occupying about MEGABYTES megabytes (at least one
+     *  bucket). */
+    TranspositionTable(int megabytes) {
+        long entries = Math.max(2, ((long) megabytes << 20) / ENTRY_BYTES);
+        int buckets = Integer.highestOneBit((int) Math.min(entries / 2,
+                                                           1 << 30));
+        _keys = new long[2 * buckets];
+        _data = new long[2 * buckets];
+        _mask = buckets - 1;
+    }
+
+    /** Return the data stored for the position with key KEY, or 0 if
+     *  there is none.  The fields of a non-zero result are extracted with
+     *  depth, bound, value, and move. */
+    long probe(long key) {
+        int i = index(key);
+        for (int j = i; j < i + 2; j += 1) {
+            long data = _data[j];
+            if (data != 0 && (_keys[j] ^ data) == key) {
+                return data;
+            }
+        }
+        return 0;
+    }
+
+    /** Record that the position with key KEY, searched to DEPTH, has
+     *  value VALUE with bound type BOUND, and best move MOVE (a square
+     *  number, or -1 if none).  Moves too large to record (on very large
+     *  boards) are recorded as -1. */
+    void store(long key, int depth, int bound, int value, int move) {
+        if (move >= MOVE_MASK) {
+            move = -1;
+        }
+        long data = ((long) value << VALUE_SHIFT)
+            | ((long) (move + 1) << MOVE_SHIFT)
+            | ((long) Math.min(depth, MAX_DEPTH) << DEPTH_SHIFT)
+            | bound;
+        int i = index(key);
+        long data0 = _data[i], key0 = _keys[i] ^ data0;
+        if (data0 == 0 || key0 == key || depth >= depth(data0)) {
+            if (data0 != 0 && key0 != key) {
+                _keys[i + 1] = key0 ^ data0;
+                _data[i + 1] = data0;
+            }
+            _keys[i] = key ^ data;
+            _data[i] = data;
+        } else {
+            _keys[i + 1] = key ^ data;
+            _data[i + 1] = data;
+        }
+    }
+
+    /** Return the search depth recorded in DATA, as returned by probe. */
+    static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & MAX_DEPTH;
+    }
+
+    /** Return the bound type (EXACT, LOWER, or UPPER) recorded in
+     *  DATA. */
+    static int bound(long data) {
+        return (int) data & BOUND_MASK;
+    }
+
+    /** Return the value recorded in DATA. */
+    static int value(long data) {
+        return (int) (data >> VALUE_SHIFT);
+    }
+
+    /** Return the best move recorded in DATA, or -1 if none. */
+    static int move(long data) {
+        return (int) ((data >>> MOVE_SHIFT) & MOVE_MASK) - 1;
+    }
+
+    /** Return the index of the first entry of the bucket for KEY. */
+    private int index(long key) {
+        return ((int) (key ^ (key >>> 32)) & _mask) << 1;
+    }
+
+    /** Return the number of bytes occupied by my entries. */
+    long memoryBytes() {
+        return (long) _keys.length * ENTRY_BYTES;
+    }
+
+    /** Number of bytes per entry. */
+    private static final int ENTRY_BYTES = 2 * Long.BYTES;
+
+    /** Layout of entry data: the bound type in the low 2 bits, the depth
+     *  in the next 8, the move plus 1 in the next 22, and the value in the
+     *  upper 32. */
+    private static final int
+        BOUND_MASK = 3,
+        DEPTH_SHIFT = 2,
+        MAX_DEPTH = 255,
+        MOVE_SHIFT = 10,
+        MOVE_MASK = (1 << 22) - 1,
+        VALUE_SHIFT = 32;
+
+    /** Keys of the positions in each entry, XORed with their data. */
+    private final long[] _keys;
+    /** Data of each entry, or 0 if empty. */
+    private final long[] _data;
+    /** Mask selecting a bucket number from a key. */
+    private final int _mask;
+}